@@ -3,6 +3,7 @@ import com.google.protobuf.gradle.id
 plugins {
     application
     id("com.google.protobuf") version "0.9.4"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 repositories {
@@ -18,11 +19,14 @@ dependencies {
     implementation("io.grpc:grpc-stub:$grpcVersion")
     implementation("com.google.protobuf:protobuf-java:$protobufVersion")
     implementation("javax.annotation:javax.annotation-api:1.3.2")
+    implementation("org.roaringbitmap:RoaringBitmap:1.3.0")
 
     implementation("org.slf4j:slf4j-api:2.0.13")
     runtimeOnly("ch.qos.logback:logback-classic:1.5.12")
 
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
+
+    jmh("io.grpc:grpc-inprocess:$grpcVersion")
 }
 
 java {
@@ -39,6 +43,11 @@ sourceSets {
 
 application {
     mainClass = "org.hnsw.EngineApplication"
+    applicationDefaultJvmArgs = listOf("--add-modules=jdk.incubator.vector")
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.compilerArgs.add("--add-modules=jdk.incubator.vector")
 }
 
 protobuf {
@@ -61,4 +70,17 @@ protobuf {
 
 tasks.test {
     useJUnitPlatform()
+    jvmArgs("--add-modules=jdk.incubator.vector")
+}
+
+jmh {
+    jvmArgsAppend.add("--add-modules=jdk.incubator.vector")
+}
+
+tasks.register<JavaExec>("recall") {
+    group = "verification"
+    description = "Measures recall@k against exact search; pass options with --args."
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "org.hnsw.bench.RecallHarness"
+    jvmArgs("--add-modules=jdk.incubator.vector")
 }
@@ -0,0 +1,105 @@
+package org.hnsw.bench;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.hnsw.distance.DistanceFunction;
+
+/**
+ * Vector datasets for benchmarks: seeded synthetic clusters and the {@code .fvecs} / {@code .ivecs} formats
+ * used by SIFT, GIST and most ANN benchmark suites (little-endian int32 dimension followed by the values).
+ */
+final class Datasets {
+    private Datasets() {
+    }
+
+    /**
+     * Gaussian blobs around uniformly placed centers; far closer to real embeddings than uniform noise, whose
+     * neighborhoods are almost equidistant in high dimensions.
+     */
+    static float[][] clustered(int count, int dimension, int clusters, long seed) {
+        Random random = new Random(seed);
+        float[][] centers = new float[clusters][dimension];
+        for (float[] center : centers) {
+            for (int d = 0; d < dimension; d++) {
+                center[d] = random.nextFloat() * 2f - 1f;
+            }
+        }
+        float[][] vectors = new float[count][dimension];
+        for (float[] vector : vectors) {
+            float[] center = centers[random.nextInt(clusters)];
+            for (int d = 0; d < dimension; d++) {
+                vector[d] = center[d] + (float) random.nextGaussian() * 0.15f;
+            }
+        }
+        return vectors;
+    }
+
+    static float[][] readFvecs(Path path, int limit) throws IOException {
+        List<float[]> vectors = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (data.remaining() >= Integer.BYTES && vectors.size() < limit) {
+                float[] vector = new float[data.getInt()];
+                data.asFloatBuffer().get(vector);
+                data.position(data.position() + vector.length * Float.BYTES);
+                vectors.add(vector);
+            }
+        }
+        return vectors.toArray(new float[0][]);
+    }
+
+    static int[][] readIvecs(Path path, int limit) throws IOException {
+        List<int[]> rows = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            while (data.remaining() >= Integer.BYTES && rows.size() < limit) {
+                int[] row = new int[data.getInt()];
+                data.asIntBuffer().get(row);
+                data.position(data.position() + row.length * Integer.BYTES);
+                rows.add(row);
+            }
+        }
+        return rows.toArray(new int[0][]);
+    }
+
+    /**
+     * Exact k nearest neighbors of every query, computed in parallel by brute force.
+     */
+    static int[][] groundTruth(float[][] base, float[][] queries, int k, DistanceFunction distanceFunction) {
+        float[][] prepared = new float[base.length][];
+        IntStream.range(0, base.length).parallel()
+                .forEach(i -> prepared[i] = distanceFunction.prepare(base[i]));
+        int[][] truth = new int[queries.length][];
+        IntStream.range(0, queries.length).parallel().forEach(q -> {
+            float[] query = distanceFunction.prepare(queries[q]);
+            PriorityQueue<double[]> best = new PriorityQueue<>(Comparator.comparingDouble((double[] e) -> -e[0]));
+            for (int i = 0; i < prepared.length; i++) {
+                double distance = distanceFunction.distance(query, prepared[i], 0);
+                if (best.size() < k) {
+                    best.add(new double[] {distance, i});
+                } else if (distance < best.peek()[0]) {
+                    best.poll();
+                    best.add(new double[] {distance, i});
+                }
+            }
+            int[] ids = new int[best.size()];
+            for (int i = ids.length - 1; i >= 0; i--) {
+                ids[i] = (int) best.poll()[1];
+            }
+            truth[q] = ids;
+        });
+        return truth;
+    }
+}
@@ -0,0 +1,56 @@
+package org.hnsw.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.distance.VectorOps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    @Param({"128", "384", "768", "1536"})
+    int dimension;
+
+    @Param({"scalar", "simd"})
+    String kernels;
+
+    private VectorOps ops;
+    private float[] a;
+    private float[] b;
+
+    @Setup
+    public void setup() {
+        ops = VectorOps.create("simd".equals(kernels));
+        Random random = new Random(7);
+        a = new float[dimension];
+        b = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = random.nextFloat();
+            b[i] = random.nextFloat();
+        }
+    }
+
+    @Benchmark
+    public float dot() {
+        return ops.dot(a, b, 0, dimension);
+    }
+
+    @Benchmark
+    public float squareDistance() {
+        return ops.squareDistance(a, b, 0, dimension);
+    }
+}
@@ -0,0 +1,145 @@
+package org.hnsw.bench;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.grpc.VectorServiceImpl;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import vector_service.VectorServiceGrpc;
+import vector_service.VectorServiceOuterClass.BatchQuery;
+import vector_service.VectorServiceOuterClass.PackedVector;
+import vector_service.VectorServiceOuterClass.QueryBatchRequest;
+import vector_service.VectorServiceOuterClass.QueryBatchResponse;
+import vector_service.VectorServiceOuterClass.QueryRequest;
+import vector_service.VectorServiceOuterClass.QueryResponse;
+import vector_service.VectorServiceOuterClass.VectorEncoding;
+
+/**
+ * Query round trips through the real service implementation over an in-process channel, so request
+ * decoding, registry lookup and response encoding are included without network noise. Results carry their
+ * values, sent as repeated floats or, with {@code packed}, as float32 bytes in both directions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrpcRoundTripBenchmark {
+    private static final String NAMESPACE = "bench";
+    private static final int QUERIES = 256;
+    private static final int BATCH = 32;
+
+    @Param({"50000"})
+    int size;
+
+    @Param({"384"})
+    int dimension;
+
+    @Param({"false", "true"})
+    boolean packed;
+
+    private Server server;
+    private ManagedChannel channel;
+    private VectorServiceGrpc.VectorServiceBlockingStub stub;
+    private QueryRequest[] queries;
+    private QueryBatchRequest batch;
+
+    @Setup
+    public void setup() throws IOException {
+        NamespaceIndexRegistry registry = new NamespaceIndexRegistry(
+                16, 200, 64, DistanceMetric.COSINE.create(VectorOps.create(true)));
+        float[][] vectors = Datasets.clustered(size + QUERIES, dimension, 100, 42L);
+        VectorIndex index = registry.getOrCreate(NAMESPACE, dimension);
+        IntStream.range(0, size).parallel()
+                .forEach(i -> index.upsert(new VectorRecord("v" + i, vectors[i], Map.of("n", "v" + i))));
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(new VectorServiceImpl(registry))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        stub = VectorServiceGrpc.newBlockingStub(channel);
+
+        queries = new QueryRequest[QUERIES];
+        QueryBatchRequest.Builder batchBuilder = QueryBatchRequest.newBuilder().setNamespace(NAMESPACE);
+        for (int q = 0; q < QUERIES; q++) {
+            QueryRequest.Builder builder = QueryRequest.newBuilder()
+                    .setNamespace(NAMESPACE)
+                    .setTopK(10)
+                    .setIncludeValues(true)
+                    .setIncludeMetadata(true)
+                    .setPackedValues(packed);
+            BatchQuery.Builder batchQuery = BatchQuery.newBuilder().setTopK(10);
+            if (packed) {
+                PackedVector vector = pack(vectors[size + q]);
+                builder.setPackedVector(vector);
+                batchQuery.setPackedVector(vector);
+            } else {
+                for (float value : vectors[size + q]) {
+                    builder.addVector(value);
+                    batchQuery.addVector(value);
+                }
+            }
+            queries[q] = builder.build();
+            if (q < BATCH) {
+                batchBuilder.addQueries(batchQuery);
+            }
+        }
+        batch = batchBuilder.setIncludeValues(true).setIncludeMetadata(true).setPackedValues(packed).build();
+    }
+
+    private static PackedVector pack(float[] values) {
+        ByteBuffer data = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        data.asFloatBuffer().put(values);
+        return PackedVector.newBuilder()
+                .setEncoding(VectorEncoding.VECTOR_ENCODING_FLOAT32)
+                .setData(ByteString.copyFrom(data.array()))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public QueryResponse query() {
+        return stub.query(queries[ThreadLocalRandom.current().nextInt(QUERIES)]);
+    }
+
+    /**
+     * One call carrying {@value #BATCH} queries; divide the score by {@value #BATCH} to compare per query.
+     */
+    @Benchmark
+    public QueryBatchResponse queryBatch() {
+        return stub.queryBatch(batch);
+    }
+}
@@ -0,0 +1,77 @@
+package org.hnsw.bench;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insert throughput into an empty index, reported per vector. {@code builders} > 1 inserts concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InsertBenchmark {
+    private static final int BATCH = 20_000;
+
+    @Param({"128"})
+    int dimension;
+
+    @Param({"1", "4"})
+    int builders;
+
+    private float[][] vectors;
+    private ForkJoinPool pool;
+    private HnswIndex index;
+
+    @Setup(Level.Trial)
+    public void data() {
+        vectors = Datasets.clustered(BATCH, dimension, 100, 42L);
+        pool = new ForkJoinPool(builders);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    @Setup(Level.Invocation)
+    public void freshIndex() {
+        index = new HnswIndex(dimension, 16, 200, 64, DistanceMetric.COSINE.create(VectorOps.create(true)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public HnswIndex insert() {
+        if (builders == 1) {
+            for (int i = 0; i < BATCH; i++) {
+                index.upsert(new VectorRecord("v" + i, vectors[i], Map.of()));
+            }
+        } else {
+            pool.submit(() -> IntStream.range(0, BATCH).parallel()
+                    .forEach(i -> index.upsert(new VectorRecord("v" + i, vectors[i], Map.of())))).join();
+        }
+        return index;
+    }
+}
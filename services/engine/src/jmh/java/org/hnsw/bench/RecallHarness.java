@@ -0,0 +1,155 @@
+package org.hnsw.bench;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.hnsw.hnsw.ShardedIndex;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.quantization.QuantizationConfig;
+
+/**
+ * Measures recall@k of the HNSW index against exact brute force, either on a generated clustered dataset or
+ * on the usual {@code .fvecs}/{@code .ivecs} files (SIFT, GloVe, ...). Prints build time and, for every ef,
+ * recall and single-threaded QPS. With {@code --reorder true} the measurements are repeated after
+ * {@link VectorIndex#reordered reordering} the index for locality.
+ *
+ * <pre>
+ * ./gradlew recall --args="--n 100000 --dim 128 --ef 16,64,256 --threads 8"
+ * ./gradlew recall --args="--n 100000 --dim 128 --shards 4"
+ * ./gradlew recall --args="--n 1000000 --dim 128 --ef 64 --reorder true"
+ * ./gradlew recall --args="--base sift_base.fvecs --query sift_query.fvecs --groundtruth sift_groundtruth.ivecs"
+ * </pre>
+ */
+public final class RecallHarness {
+
+    private RecallHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int n = Integer.parseInt(options.getOrDefault("n", "100000"));
+        int dimension = Integer.parseInt(options.getOrDefault("dim", "128"));
+        int queryCount = Integer.parseInt(options.getOrDefault("queries", "1000"));
+        int k = Integer.parseInt(options.getOrDefault("k", "10"));
+        int m = Integer.parseInt(options.getOrDefault("m", "16"));
+        int efConstruction = Integer.parseInt(options.getOrDefault("ef-construction", "200"));
+        int shards = Integer.parseInt(options.getOrDefault("shards", "1"));
+        boolean reorder = Boolean.parseBoolean(options.getOrDefault("reorder", "false"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int[] efs = Arrays.stream(options.getOrDefault("ef", "16,32,64,128,256").split(","))
+                .mapToInt(value -> Integer.parseInt(value.trim()))
+                .toArray();
+        DistanceMetric metric = DistanceMetric.parse(options.getOrDefault("metric", "cosine"));
+        DistanceFunction distanceFunction = metric.create(VectorOps.create(true));
+
+        float[][] base;
+        float[][] queries;
+        int[][] truth = null;
+        if (options.containsKey("base")) {
+            int limit = options.containsKey("n") ? n : Integer.MAX_VALUE;
+            base = Datasets.readFvecs(Path.of(options.get("base")), limit);
+            queries = Datasets.readFvecs(Path.of(options.get("query")), queryCount);
+            if (options.containsKey("groundtruth") && limit == Integer.MAX_VALUE) {
+                truth = Datasets.readIvecs(Path.of(options.get("groundtruth")), queryCount);
+            }
+            dimension = base[0].length;
+        } else {
+            float[][] vectors = Datasets.clustered(n + queryCount, dimension, 100, 42L);
+            base = Arrays.copyOf(vectors, n);
+            queries = Arrays.copyOfRange(vectors, n, n + queryCount);
+        }
+        System.out.printf("dataset: %d base vectors, %d queries, dimension %d, metric %s%n",
+                base.length, queries.length, dimension, metric);
+
+        if (truth == null) {
+            long started = System.nanoTime();
+            truth = Datasets.groundTruth(base, queries, k, distanceFunction);
+            System.out.printf("exact ground truth computed in %d ms%n", elapsedMillis(started));
+        }
+
+        VectorIndex index = shards > 1
+                ? new ShardedIndex(shards, dimension, m, efConstruction, efs[0], distanceFunction,
+                        QuantizationConfig.none())
+                : new HnswIndex(dimension, m, efConstruction, efs[0], distanceFunction);
+        long started = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> IntStream.range(0, base.length).parallel()
+                    .forEach(i -> index.upsert(new VectorRecord(Integer.toString(i), base[i], Map.of()))))
+                    .get();
+        } finally {
+            pool.shutdown();
+        }
+        long buildMillis = Math.max(1, elapsedMillis(started));
+        System.out.printf("index built with %d threads (m=%d, efConstruction=%d, shards=%d) in %d ms, %d vectors/s%n",
+                threads, m, efConstruction, shards, buildMillis, base.length * 1000L / buildMillis);
+
+        measure(index, queries, truth, k, efs);
+        if (reorder) {
+            started = System.nanoTime();
+            VectorIndex reordered = index.reordered();
+            System.out.printf("index reordered in %d ms%n", elapsedMillis(started));
+            measure(reordered, queries, truth, k, efs);
+        }
+    }
+
+    private static void measure(VectorIndex index, float[][] queries, int[][] truth, int k, int[] efs) {
+        System.out.printf("%8s %10s %12s%n", "ef", "recall@" + k, "qps");
+        for (int ef : efs) {
+            SearchParams params = new SearchParams(ef, 0, 0);
+            for (float[] query : queries) {
+                index.search(query, k, null, params);
+            }
+            List<List<SearchResult>> answers = new ArrayList<>(queries.length);
+            long searchStarted = System.nanoTime();
+            for (float[] query : queries) {
+                answers.add(index.search(query, k, null, params));
+            }
+            double seconds = (System.nanoTime() - searchStarted) / 1e9;
+            long hits = 0;
+            for (int q = 0; q < queries.length; q++) {
+                Set<Integer> expected = new HashSet<>();
+                for (int i = 0; i < k && i < truth[q].length; i++) {
+                    expected.add(truth[q][i]);
+                }
+                for (SearchResult result : answers.get(q)) {
+                    if (expected.contains(Integer.parseInt(result.id()))) {
+                        hits++;
+                    }
+                }
+            }
+            System.out.printf("%8d %10.4f %12.0f%n", ef, hits / (double) (queries.length * k), queries.length / seconds);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value pairs but got '" + args[i] + "'");
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    private static long elapsedMillis(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
@@ -0,0 +1,87 @@
+package org.hnsw.bench;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Search throughput on a prebuilt index, single-threaded and with one thread per core, with nodes in insertion
+ * order and after {@link HnswIndex#reordered reordering} for locality.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+    private static final int QUERIES = 1_000;
+
+    @Param({"100000"})
+    int size;
+
+    @Param({"128"})
+    int dimension;
+
+    @Param({"16", "64", "256"})
+    int ef;
+
+    @Param({"cosine"})
+    String metric;
+
+    @Param({"false", "true"})
+    boolean reordered;
+
+    private HnswIndex index;
+    private float[][] queries;
+    private SearchParams params;
+
+    @Setup
+    public void setup() {
+        float[][] vectors = Datasets.clustered(size + QUERIES, dimension, 100, 42L);
+        index = new HnswIndex(dimension, 16, 200, ef, DistanceMetric.parse(metric).create(VectorOps.create(true)));
+        IntStream.range(0, size).parallel()
+                .forEach(i -> index.upsert(new VectorRecord("v" + i, vectors[i], Map.of())));
+        if (reordered) {
+            index = index.reordered();
+        }
+        queries = new float[QUERIES][];
+        System.arraycopy(vectors, size, queries, 0, QUERIES);
+        params = new SearchParams(ef, 0, 0);
+    }
+
+    @Benchmark
+    public List<SearchResult> search() {
+        return index.search(nextQuery(), 10, null, params);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public List<SearchResult> searchParallel() {
+        return index.search(nextQuery(), 10, null, params);
+    }
+
+    private float[] nextQuery() {
+        return queries[ThreadLocalRandom.current().nextInt(QUERIES)];
+    }
+}
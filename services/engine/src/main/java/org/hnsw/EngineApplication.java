@@ -1,39 +1,195 @@
 package org.hnsw;
 
+import io.grpc.ManagedChannel;
 import io.grpc.Server;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.grpc.AdmissionInterceptor;
+import org.hnsw.grpc.Lane;
+import org.hnsw.grpc.MetricsInterceptor;
+import org.hnsw.grpc.ReadOnlyInterceptor;
+import org.hnsw.grpc.Replica;
 import org.hnsw.grpc.VectorServiceImpl;
+import org.hnsw.metrics.PrometheusEndpoint;
+import org.hnsw.metrics.RpcMetrics;
+import org.hnsw.persistence.PersistenceManager;
+import org.hnsw.persistence.SpillDirectory;
+import org.hnsw.store.ChangeFeed;
+import org.hnsw.store.ColdStorage;
+import org.hnsw.store.IndexOptions;
+import org.hnsw.store.NamespaceEvictor;
 import org.hnsw.store.NamespaceIndexRegistry;
+import org.hnsw.store.TombstoneCompactor;
+import org.hnsw.store.WriteJournal;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public final class EngineApplication {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EngineApplication.class);
+    /** Feed events carry up to about 1 MiB of vectors, but a single large upsert is never split. */
+    private static final int REPLICATION_MESSAGE_BYTES = 64 << 20;
 
     public static void main(String[] args) throws IOException, InterruptedException {
         EngineConfig config = EngineConfig.fromEnv();
+        VectorOps vectorOps = VectorOps.create(config.simd());
+        DistanceFunction distanceFunction = config.distanceMetric().create(vectorOps);
+        LOGGER.info("Using {} distance with {} kernels", config.distanceMetric(), vectorOps.getClass().getSimpleName());
         NamespaceIndexRegistry registry = new NamespaceIndexRegistry(
-                config.M(), config.efConstruction(), config.efSearch());
+                config.M(), config.efConstruction(), config.efSearch(), distanceFunction,
+                new IndexOptions(config.quantization(), config.shards()));
+        if (config.queryCacheEnabled()) {
+            registry.setQueryCache(config.queryCacheEntries(), (long) config.queryCacheMb() << 20);
+            LOGGER.info("Caching up to {} query results per namespace, {} MB in total", config.queryCacheEntries(),
+                    config.queryCacheMb());
+        }
 
+        PersistenceManager persistence = null;
+        if (config.replicaEnabled() && config.persistenceEnabled()) {
+            LOGGER.warn("Ignoring ENGINE_DATA_DIR: replicas load their namespaces from the primary");
+        } else if (config.persistenceEnabled()) {
+            persistence = new PersistenceManager(Path.of(config.dataDir()), registry, distanceFunction,
+                    config.walFsync(), Duration.ofSeconds(config.snapshotIntervalSeconds()));
+            persistence.recover();
+            persistence.start();
+            LOGGER.info("Persistence enabled in {}", config.dataDir());
+        }
+        PersistenceManager persistenceManager = persistence;
+        ChangeFeed changeFeed = null;
+        if (config.changeFeedEnabled()) {
+            changeFeed = new ChangeFeed(persistenceManager != null ? persistenceManager : WriteJournal.NONE,
+                    (long) config.feedRetentionMb() << 20);
+            registry.setJournal(changeFeed);
+        }
+        ChangeFeed feed = changeFeed;
+        Replica replica = null;
+        if (config.replicaEnabled()) {
+            ManagedChannel primary = NettyChannelBuilder.forTarget(config.replicaOf())
+                    .usePlaintext()
+                    .maxInboundMessageSize(REPLICATION_MESSAGE_BYTES)
+                    .build();
+            replica = new Replica(registry, distanceFunction, primary, config.replicaNamespaceList());
+            replica.start();
+            LOGGER.info("Replicating {} from {}", config.replicaNamespaceList().isEmpty()
+                    ? "all namespaces" : config.replicaNamespaceList(), config.replicaOf());
+        }
+        Replica follower = replica;
+        TombstoneCompactor compactor = new TombstoneCompactor(
+                registry, config.compactionThreshold(), Duration.ofSeconds(config.compactionIntervalSeconds()));
+        compactor.start();
+
+        NamespaceEvictor evictor = null;
+        if (config.evictionEnabled()) {
+            ColdStorage coldStorage = persistenceManager != null
+                    ? persistenceManager
+                    : new SpillDirectory(config.spillDir().isBlank()
+                            ? Files.createTempDirectory("hensaw-spill")
+                            : Path.of(config.spillDir()), distanceFunction);
+            registry.setMemoryBudget(coldStorage, (long) config.memoryBudgetMb() << 20);
+            evictor = new NamespaceEvictor(registry, Duration.ofSeconds(config.evictionIntervalSeconds()));
+            evictor.start();
+            LOGGER.info("Evicting idle namespaces above {} MB", config.memoryBudgetMb());
+        }
+        NamespaceEvictor namespaceEvictor = evictor;
+
+        ForkJoinPool searchPool = new ForkJoinPool(config.searchThreads());
+        ExecutorService buildPool = Executors.newFixedThreadPool(config.buildThreads());
+        RpcMetrics rpcMetrics = new RpcMetrics();
+        ExecutorService readExecutor = callExecutor(config.executor(), config.executorThreads(), "grpc-read");
+        ExecutorService writeExecutor = callExecutor(config.executor(), Math.max(1, config.executorThreads() / 2),
+                "grpc-write");
+
+        List<ServerInterceptor> interceptors = new ArrayList<>();
+        if (config.admissionControlEnabled()) {
+            interceptors.add(new AdmissionInterceptor(config.concurrencyLimit(), registry::contains));
+        }
+        if (config.replicaEnabled()) {
+            interceptors.add(new ReadOnlyInterceptor(config.replicaOf()));
+        }
+        interceptors.add(new MetricsInterceptor(rpcMetrics));
         Server server = NettyServerBuilder.forPort(config.port())
-                .addService(new VectorServiceImpl(registry))
+                .executor(readExecutor)
+                .callExecutor(Lane.executors(writeExecutor))
+                .addService(ServerInterceptors.intercept(
+                        new VectorServiceImpl(registry, searchPool, buildPool, config.buildThreads(), rpcMetrics,
+                                feed, follower),
+                        interceptors))
                 .build()
                 .start();
 
-        LOGGER.info("Vector engine started on port {}", config.port());
+        LOGGER.info("Vector engine started on port {} with {} call executors{}", config.port(),
+                config.executor().name().toLowerCase(Locale.ROOT), config.admissionControlEnabled()
+                        ? ", admitting up to " + config.concurrencyLimit() + " calls per namespace and lane" : "");
+
+        PrometheusEndpoint metricsEndpoint = null;
+        if (config.metricsEnabled()) {
+            metricsEndpoint = new PrometheusEndpoint(config.metricsPort(), registry, rpcMetrics);
+            metricsEndpoint.start();
+            LOGGER.info("Prometheus metrics served on port {} at /metrics", config.metricsPort());
+        }
+        PrometheusEndpoint prometheus = metricsEndpoint;
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             LOGGER.info("Shutting down vector engine...");
+            if (follower != null) {
+                follower.close();
+            }
+            if (feed != null) {
+                feed.close();
+            }
             try {
                 server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
+            if (prometheus != null) {
+                prometheus.close();
+            }
+            readExecutor.shutdown();
+            writeExecutor.shutdown();
+            searchPool.shutdown();
+            buildPool.shutdown();
+            compactor.close();
+            if (namespaceEvictor != null) {
+                namespaceEvictor.close();
+            }
+            if (persistenceManager != null) {
+                try {
+                    persistenceManager.close();
+                } catch (IOException e) {
+                    LOGGER.error("Failed to write final snapshots", e);
+                }
+            }
         }));
 
         server.awaitTermination();
     }
+
+    /**
+     * Executor for gRPC calls: a virtual thread per call, or a fixed pool of {@code threads} platform threads.
+     * Virtual threads of both lanes run on the JVM's one carrier pool, so in that mode only the admission limits
+     * keep writes from crowding out reads.
+     */
+    private static ExecutorService callExecutor(EngineConfig.ExecutorMode mode, int threads, String name) {
+        return switch (mode) {
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory());
+            case POOL -> Executors.newFixedThreadPool(threads,
+                    Thread.ofPlatform().name(name + "-", 0).daemon().factory());
+        };
+    }
 }
@@ -1,26 +1,149 @@
 package org.hnsw;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.quantization.QuantizationConfig;
+
 public record EngineConfig(
         int port,
         int M,
         int efConstruction,
-        int efSearch
+        int efSearch,
+        DistanceMetric distanceMetric,
+        boolean simd,
+        QuantizationConfig quantization,
+        String dataDir,
+        int snapshotIntervalSeconds,
+        boolean walFsync,
+        double compactionThreshold,
+        int compactionIntervalSeconds,
+        int searchThreads,
+        int buildThreads,
+        int metricsPort,
+        int memoryBudgetMb,
+        int evictionIntervalSeconds,
+        String spillDir,
+        int shards,
+        ExecutorMode executor,
+        int executorThreads,
+        int concurrencyLimit,
+        int queryCacheEntries,
+        int queryCacheMb,
+        int feedRetentionMb,
+        String replicaOf,
+        String replicaNamespaces
 ) {
 
     private static final int DEFAULT_PORT = 50051;
     private static final int DEFAULT_M = 16;
     private static final int DEFAULT_EF_CONSTRUCTION = 200;
     private static final int DEFAULT_EF_SEARCH = 64;
+    private static final DistanceMetric DEFAULT_DISTANCE_METRIC = DistanceMetric.COSINE;
+    private static final boolean DEFAULT_SIMD = true;
+    private static final QuantizationConfig.Mode DEFAULT_QUANTIZATION = QuantizationConfig.Mode.NONE;
+    private static final int DEFAULT_SNAPSHOT_INTERVAL_SECONDS = 300;
+    private static final boolean DEFAULT_WAL_FSYNC = true;
+    private static final double DEFAULT_COMPACTION_THRESHOLD = 0.2;
+    private static final int DEFAULT_COMPACTION_INTERVAL_SECONDS = 30;
+    private static final int DEFAULT_EVICTION_INTERVAL_SECONDS = 10;
+    private static final ExecutorMode DEFAULT_EXECUTOR = ExecutorMode.VIRTUAL;
+    private static final int DEFAULT_CONCURRENCY_LIMIT = 256;
+    private static final int DEFAULT_QUERY_CACHE_ENTRIES = 1024;
+    private static final int DEFAULT_QUERY_CACHE_MB = 64;
+    private static final int DEFAULT_FEED_RETENTION_MB = 16;
+
+    /**
+     * How gRPC calls are run: a virtual thread per call, or fixed pools of platform threads sized to the cores.
+     */
+    public enum ExecutorMode {
+        VIRTUAL,
+        POOL;
+
+        public static ExecutorMode parse(String raw) {
+            return switch (raw.trim().toLowerCase(Locale.ROOT)) {
+                case "virtual" -> VIRTUAL;
+                case "pool", "fixed" -> POOL;
+                default -> throw new IllegalArgumentException("Unknown executor mode: " + raw);
+            };
+        }
+    }
 
     public static EngineConfig fromEnv() {
         return new EngineConfig(
                 readEnv("ENGINE_PORT", DEFAULT_PORT),
                 readEnv("ENGINE_M", DEFAULT_M),
                 readEnv("ENGINE_EF_CONSTRUCTION", DEFAULT_EF_CONSTRUCTION),
-                readEnv("ENGINE_EF_SEARCH", DEFAULT_EF_SEARCH)
+                readEnv("ENGINE_EF_SEARCH", DEFAULT_EF_SEARCH),
+                readMetric("ENGINE_DISTANCE", DEFAULT_DISTANCE_METRIC),
+                readEnv("ENGINE_SIMD", DEFAULT_SIMD),
+                new QuantizationConfig(
+                        readQuantization("ENGINE_QUANTIZATION", DEFAULT_QUANTIZATION),
+                        readEnv("ENGINE_QUANTIZATION_TRAINING_SIZE", QuantizationConfig.DEFAULT_TRAINING_SIZE),
+                        readEnv("ENGINE_PQ_SUBSPACES", 0),
+                        readEnv("ENGINE_KEEP_FULL_VECTORS", true)),
+                readEnv("ENGINE_DATA_DIR", ""),
+                readEnv("ENGINE_SNAPSHOT_INTERVAL_SECONDS", DEFAULT_SNAPSHOT_INTERVAL_SECONDS),
+                readEnv("ENGINE_WAL_FSYNC", DEFAULT_WAL_FSYNC),
+                readEnv("ENGINE_COMPACTION_THRESHOLD", DEFAULT_COMPACTION_THRESHOLD),
+                readEnv("ENGINE_COMPACTION_INTERVAL_SECONDS", DEFAULT_COMPACTION_INTERVAL_SECONDS),
+                readEnv("ENGINE_SEARCH_THREADS", Runtime.getRuntime().availableProcessors()),
+                readEnv("ENGINE_BUILD_THREADS", Runtime.getRuntime().availableProcessors()),
+                readEnv("ENGINE_METRICS_PORT", 0),
+                readEnv("ENGINE_MEMORY_BUDGET_MB", 0),
+                readEnv("ENGINE_EVICTION_INTERVAL_SECONDS", DEFAULT_EVICTION_INTERVAL_SECONDS),
+                readEnv("ENGINE_SPILL_DIR", ""),
+                readEnv("ENGINE_SHARDS", 1),
+                readExecutor("ENGINE_EXECUTOR", DEFAULT_EXECUTOR),
+                readEnv("ENGINE_EXECUTOR_THREADS", Runtime.getRuntime().availableProcessors()),
+                readEnv("ENGINE_CONCURRENCY_LIMIT", DEFAULT_CONCURRENCY_LIMIT),
+                readEnv("ENGINE_QUERY_CACHE_ENTRIES", DEFAULT_QUERY_CACHE_ENTRIES),
+                readEnv("ENGINE_QUERY_CACHE_MB", DEFAULT_QUERY_CACHE_MB),
+                readEnv("ENGINE_FEED_RETENTION_MB", DEFAULT_FEED_RETENTION_MB),
+                readEnv("ENGINE_REPLICA_OF", ""),
+                readEnv("ENGINE_REPLICA_NAMESPACES", "")
         );
     }
 
+    public boolean persistenceEnabled() {
+        return !dataDir.isBlank();
+    }
+
+    public boolean metricsEnabled() {
+        return metricsPort > 0;
+    }
+
+    public boolean evictionEnabled() {
+        return memoryBudgetMb > 0;
+    }
+
+    public boolean admissionControlEnabled() {
+        return concurrencyLimit > 0;
+    }
+
+    public boolean queryCacheEnabled() {
+        return queryCacheEntries > 0 && queryCacheMb > 0;
+    }
+
+    public boolean changeFeedEnabled() {
+        return feedRetentionMb > 0;
+    }
+
+    public boolean replicaEnabled() {
+        return !replicaOf.isBlank();
+    }
+
+    /**
+     * Namespaces a replica follows; empty for all of the primary's.
+     */
+    public List<String> replicaNamespaceList() {
+        return Arrays.stream(replicaNamespaces.split(","))
+                .map(String::trim)
+                .filter(namespace -> !namespace.isEmpty())
+                .toList();
+    }
+
     private static int readEnv(String key, int fallback) {
         String raw = System.getenv(key);
         if (raw == null || raw.isBlank()) {
@@ -32,4 +155,65 @@ public record EngineConfig(
             return fallback;
         }
     }
+
+    private static double readEnv(String key, double fallback) {
+        String raw = System.getenv(key);
+        if (raw == null || raw.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Double.parseDouble(raw.trim());
+        } catch (NumberFormatException ex) {
+            return fallback;
+        }
+    }
+
+    private static String readEnv(String key, String fallback) {
+        String raw = System.getenv(key);
+        return raw == null || raw.isBlank() ? fallback : raw.trim();
+    }
+
+    private static boolean readEnv(String key, boolean fallback) {
+        String raw = System.getenv(key);
+        if (raw == null || raw.isBlank()) {
+            return fallback;
+        }
+        return Boolean.parseBoolean(raw.trim());
+    }
+
+    private static DistanceMetric readMetric(String key, DistanceMetric fallback) {
+        String raw = System.getenv(key);
+        if (raw == null || raw.isBlank()) {
+            return fallback;
+        }
+        try {
+            return DistanceMetric.parse(raw);
+        } catch (IllegalArgumentException ex) {
+            return fallback;
+        }
+    }
+
+    private static QuantizationConfig.Mode readQuantization(String key, QuantizationConfig.Mode fallback) {
+        String raw = System.getenv(key);
+        if (raw == null || raw.isBlank()) {
+            return fallback;
+        }
+        try {
+            return QuantizationConfig.Mode.parse(raw);
+        } catch (IllegalArgumentException ex) {
+            return fallback;
+        }
+    }
+
+    private static ExecutorMode readExecutor(String key, ExecutorMode fallback) {
+        String raw = System.getenv(key);
+        if (raw == null || raw.isBlank()) {
+            return fallback;
+        }
+        try {
+            return ExecutorMode.parse(raw);
+        } catch (IllegalArgumentException ex) {
+            return fallback;
+        }
+    }
 }
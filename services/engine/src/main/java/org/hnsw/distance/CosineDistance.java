@@ -1,23 +1,60 @@
 package org.hnsw.distance;
 
 public final class CosineDistance implements DistanceFunction {
+    private final VectorOps ops;
+
+    public CosineDistance() {
+        this(VectorOps.create(true));
+    }
+
+    public CosineDistance(VectorOps ops) {
+        this.ops = ops;
+    }
+
+    /**
+     * Cosine distance of two vectors as given, normalizing both; a zero vector is at distance 1 from anything.
+     */
     @Override
     public double distance(float[] a, float[] b) {
         if (a.length != b.length) {
             throw new IllegalArgumentException("Vector dimensions must match");
         }
-        double dot = 0.0;
-        double normA = 0.0;
-        double normB = 0.0;
-        for (int i = 0; i < a.length; i++) {
-            dot += a[i] * b[i];
-            normA += a[i] * a[i];
-            normB += b[i] * b[i];
+        double norms = Math.sqrt((double) ops.dot(a, a, 0, a.length) * ops.dot(b, b, 0, b.length));
+        return norms == 0.0 ? 1.0 : 1.0 - ops.dot(a, b, 0, a.length) / norms;
+    }
+
+    /**
+     * Fast path for vectors that went through {@link #prepare}: with both at unit length the distance is
+     * {@code 1 - dot}.
+     */
+    @Override
+    public double distance(float[] query, float[] data, int offset) {
+        return 1.0 - ops.dot(query, data, offset, query.length);
+    }
+
+    @Override
+    public float[] prepare(float[] vector) {
+        float norm = (float) Math.sqrt(ops.dot(vector, vector, 0, vector.length));
+        float[] normalized = new float[vector.length];
+        if (norm == 0f) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] / norm;
         }
-        if (normA == 0 || normB == 0) {
-            return 1.0;
+        return normalized;
+    }
+
+    @Override
+    public void distances(float[] query, float[] data, int offset, int count, double[] out) {
+        ops.dotBlock(query, data, offset, query.length, count, out);
+        for (int row = 0; row < count; row++) {
+            out[row] = 1.0 - out[row];
         }
-        double similarity = dot / (Math.sqrt(normA) * Math.sqrt(normB));
-        return 1.0 - similarity;
+    }
+
+    @Override
+    public DistanceMetric metric() {
+        return DistanceMetric.COSINE;
     }
 }
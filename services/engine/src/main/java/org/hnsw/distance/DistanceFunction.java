@@ -1,5 +1,34 @@
 package org.hnsw.distance;
 
 public interface DistanceFunction {
+    /**
+     * Distance between two vectors as given.
+     */
     double distance(float[] a, float[] b);
+
+    /**
+     * Distance from {@code query} to the vector stored in {@code data} from {@code offset}. Both must have been
+     * {@link #prepare prepared}; this is the form indexes score with.
+     */
+    double distance(float[] query, float[] data, int offset);
+
+    DistanceMetric metric();
+
+    /**
+     * Distances from {@code query} to {@code count} vectors stored back to back in {@code data} from
+     * {@code offset}, written to {@code out[0, count)}.
+     */
+    default void distances(float[] query, float[] data, int offset, int count, double[] out) {
+        for (int row = 0; row < count; row++) {
+            out[row] = distance(query, data, offset + row * query.length);
+        }
+    }
+
+    /**
+     * Maps a vector into the form {@link #distance(float[], float[], int)} expects. Indexes apply it once to
+     * every stored vector and to every query, which lets cosine distance work on pre-normalized vectors.
+     */
+    default float[] prepare(float[] vector) {
+        return vector;
+    }
 }
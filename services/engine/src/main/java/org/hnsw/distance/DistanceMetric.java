@@ -0,0 +1,26 @@
+package org.hnsw.distance;
+
+import java.util.Locale;
+
+public enum DistanceMetric {
+    COSINE,
+    DOT_PRODUCT,
+    L2;
+
+    public DistanceFunction create(VectorOps ops) {
+        return switch (this) {
+            case COSINE -> new CosineDistance(ops);
+            case DOT_PRODUCT -> new DotProductDistance(ops);
+            case L2 -> new EuclideanDistance(ops);
+        };
+    }
+
+    public static DistanceMetric parse(String raw) {
+        return switch (raw.trim().toLowerCase(Locale.ROOT)) {
+            case "cosine" -> COSINE;
+            case "dot", "dot_product", "ip" -> DOT_PRODUCT;
+            case "l2", "euclidean" -> L2;
+            default -> throw new IllegalArgumentException("Unknown distance metric: " + raw);
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package org.hnsw.distance;
+
+public final class DotProductDistance implements DistanceFunction {
+    private final VectorOps ops;
+
+    public DotProductDistance(VectorOps ops) {
+        this.ops = ops;
+    }
+
+    @Override
+    public double distance(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions must match");
+        }
+        return distance(a, b, 0);
+    }
+
+    @Override
+    public double distance(float[] query, float[] data, int offset) {
+        return 1.0 - ops.dot(query, data, offset, query.length);
+    }
+
+    @Override
+    public void distances(float[] query, float[] data, int offset, int count, double[] out) {
+        ops.dotBlock(query, data, offset, query.length, count, out);
+        for (int row = 0; row < count; row++) {
+            out[row] = 1.0 - out[row];
+        }
+    }
+
+    @Override
+    public DistanceMetric metric() {
+        return DistanceMetric.DOT_PRODUCT;
+    }
+}
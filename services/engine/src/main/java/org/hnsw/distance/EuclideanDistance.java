@@ -0,0 +1,32 @@
+package org.hnsw.distance;
+
+public final class EuclideanDistance implements DistanceFunction {
+    private final VectorOps ops;
+
+    public EuclideanDistance(VectorOps ops) {
+        this.ops = ops;
+    }
+
+    @Override
+    public double distance(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Vector dimensions must match");
+        }
+        return distance(a, b, 0);
+    }
+
+    @Override
+    public double distance(float[] query, float[] data, int offset) {
+        return ops.squareDistance(query, data, offset, query.length);
+    }
+
+    @Override
+    public void distances(float[] query, float[] data, int offset, int count, double[] out) {
+        ops.squareDistanceBlock(query, data, offset, query.length, count, out);
+    }
+
+    @Override
+    public DistanceMetric metric() {
+        return DistanceMetric.L2;
+    }
+}
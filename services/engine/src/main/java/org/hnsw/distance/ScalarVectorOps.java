@@ -0,0 +1,36 @@
+package org.hnsw.distance;
+
+final class ScalarVectorOps implements VectorOps {
+    @Override
+    public float dot(float[] a, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float squareDistance(float[] a, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            float diff = a[i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void dotBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out) {
+        for (int row = 0; row < count; row++) {
+            out[row] = dot(a, b, bOffset + row * length, length);
+        }
+    }
+
+    @Override
+    public void squareDistanceBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out) {
+        for (int row = 0; row < count; row++) {
+            out[row] = squareDistance(a, b, bOffset + row * length, length);
+        }
+    }
+}
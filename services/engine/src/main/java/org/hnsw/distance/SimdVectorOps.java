@@ -0,0 +1,138 @@
+package org.hnsw.distance;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernels. The block variants score four stored vectors per pass so every query lane loaded from
+ * memory feeds four independent FMA chains.
+ */
+final class SimdVectorOps implements VectorOps {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public float dot(float[] a, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public float squareDistance(float[] a, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, a, i)
+                    .sub(FloatVector.fromArray(SPECIES, b, bOffset + i));
+            acc = diff.fma(diff, acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float diff = a[i] - b[bOffset + i];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void dotBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out) {
+        int bound = SPECIES.loopBound(length);
+        int row = 0;
+        for (; row + 4 <= count; row += 4) {
+            int o0 = bOffset + row * length;
+            int o1 = o0 + length;
+            int o2 = o1 + length;
+            int o3 = o2 + length;
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            FloatVector acc2 = FloatVector.zero(SPECIES);
+            FloatVector acc3 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+                acc0 = va.fma(FloatVector.fromArray(SPECIES, b, o0 + i), acc0);
+                acc1 = va.fma(FloatVector.fromArray(SPECIES, b, o1 + i), acc1);
+                acc2 = va.fma(FloatVector.fromArray(SPECIES, b, o2 + i), acc2);
+                acc3 = va.fma(FloatVector.fromArray(SPECIES, b, o3 + i), acc3);
+            }
+            float s0 = acc0.reduceLanes(VectorOperators.ADD);
+            float s1 = acc1.reduceLanes(VectorOperators.ADD);
+            float s2 = acc2.reduceLanes(VectorOperators.ADD);
+            float s3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < length; i++) {
+                s0 += a[i] * b[o0 + i];
+                s1 += a[i] * b[o1 + i];
+                s2 += a[i] * b[o2 + i];
+                s3 += a[i] * b[o3 + i];
+            }
+            out[row] = s0;
+            out[row + 1] = s1;
+            out[row + 2] = s2;
+            out[row + 3] = s3;
+        }
+        for (; row < count; row++) {
+            out[row] = dot(a, b, bOffset + row * length, length);
+        }
+    }
+
+    @Override
+    public void squareDistanceBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out) {
+        int bound = SPECIES.loopBound(length);
+        int row = 0;
+        for (; row + 4 <= count; row += 4) {
+            int o0 = bOffset + row * length;
+            int o1 = o0 + length;
+            int o2 = o1 + length;
+            int o3 = o2 + length;
+            FloatVector acc0 = FloatVector.zero(SPECIES);
+            FloatVector acc1 = FloatVector.zero(SPECIES);
+            FloatVector acc2 = FloatVector.zero(SPECIES);
+            FloatVector acc3 = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < bound; i += SPECIES.length()) {
+                FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+                FloatVector d0 = va.sub(FloatVector.fromArray(SPECIES, b, o0 + i));
+                FloatVector d1 = va.sub(FloatVector.fromArray(SPECIES, b, o1 + i));
+                FloatVector d2 = va.sub(FloatVector.fromArray(SPECIES, b, o2 + i));
+                FloatVector d3 = va.sub(FloatVector.fromArray(SPECIES, b, o3 + i));
+                acc0 = d0.fma(d0, acc0);
+                acc1 = d1.fma(d1, acc1);
+                acc2 = d2.fma(d2, acc2);
+                acc3 = d3.fma(d3, acc3);
+            }
+            float s0 = acc0.reduceLanes(VectorOperators.ADD);
+            float s1 = acc1.reduceLanes(VectorOperators.ADD);
+            float s2 = acc2.reduceLanes(VectorOperators.ADD);
+            float s3 = acc3.reduceLanes(VectorOperators.ADD);
+            for (; i < length; i++) {
+                float d0 = a[i] - b[o0 + i];
+                float d1 = a[i] - b[o1 + i];
+                float d2 = a[i] - b[o2 + i];
+                float d3 = a[i] - b[o3 + i];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+            }
+            out[row] = s0;
+            out[row + 1] = s1;
+            out[row + 2] = s2;
+            out[row + 3] = s3;
+        }
+        for (; row < count; row++) {
+            out[row] = squareDistance(a, b, bOffset + row * length, length);
+        }
+    }
+}
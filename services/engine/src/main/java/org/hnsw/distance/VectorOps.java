@@ -0,0 +1,38 @@
+package org.hnsw.distance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public interface VectorOps {
+    float dot(float[] a, float[] b, int bOffset, int length);
+
+    float squareDistance(float[] a, float[] b, int bOffset, int length);
+
+    /**
+     * Dot products of {@code a} with {@code count} vectors of {@code length} floats stored back to back in
+     * {@code b} from {@code bOffset}, written to {@code out[0, count)}.
+     */
+    void dotBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out);
+
+    /**
+     * Squared Euclidean distances of {@code a} to {@code count} consecutive vectors, laid out as for
+     * {@link #dotBlock}.
+     */
+    void squareDistanceBlock(float[] a, float[] b, int bOffset, int length, int count, double[] out);
+
+    static VectorOps create(boolean preferSimd) {
+        Logger logger = LoggerFactory.getLogger(VectorOps.class);
+        if (preferSimd) {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    return new SimdVectorOps();
+                } catch (LinkageError ex) {
+                    logger.warn("Vector API unavailable, falling back to scalar distance kernels", ex);
+                }
+            } else {
+                logger.warn("Module jdk.incubator.vector is not enabled, falling back to scalar distance kernels");
+            }
+        }
+        return new ScalarVectorOps();
+    }
+}
@@ -0,0 +1,40 @@
+package org.hnsw.filter;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Boolean predicate over record metadata: key equality or membership, combined with AND / OR.
+ */
+public sealed interface MetadataFilter {
+
+    record Match(String key, Set<String> values) implements MetadataFilter {
+        public Match {
+            if (key == null || key.isBlank()) {
+                throw new IllegalArgumentException("Filter key must be provided");
+            }
+            if (values == null || values.isEmpty()) {
+                throw new IllegalArgumentException("Filter on '" + key + "' needs at least one value");
+            }
+            values = Set.copyOf(values);
+        }
+    }
+
+    record And(List<MetadataFilter> filters) implements MetadataFilter {
+        public And {
+            if (filters == null || filters.isEmpty()) {
+                throw new IllegalArgumentException("AND filter needs at least one operand");
+            }
+            filters = List.copyOf(filters);
+        }
+    }
+
+    record Or(List<MetadataFilter> filters) implements MetadataFilter {
+        public Or {
+            if (filters == null || filters.isEmpty()) {
+                throw new IllegalArgumentException("OR filter needs at least one operand");
+            }
+            filters = List.copyOf(filters);
+        }
+    }
+}
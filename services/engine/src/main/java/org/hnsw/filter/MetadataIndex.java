@@ -0,0 +1,99 @@
+package org.hnsw.filter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * Inverted index from a metadata (key, value) pair to the compressed set of node ordinals carrying it.
+ * Filters are evaluated into a private bitmap under a short read lock, so searches can probe the result
+ * without further synchronization.
+ */
+public final class MetadataIndex {
+    private final Map<String, Map<String, RoaringBitmap>> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(int node, Map<String, String> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, String> attribute : metadata.entrySet()) {
+                postings.computeIfAbsent(attribute.getKey(), key -> new HashMap<>())
+                        .computeIfAbsent(attribute.getValue(), value -> new RoaringBitmap())
+                        .add(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int node, Map<String, String> metadata) {
+        if (metadata == null || metadata.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, String> attribute : metadata.entrySet()) {
+                Map<String, RoaringBitmap> values = postings.get(attribute.getKey());
+                RoaringBitmap nodes = values == null ? null : values.get(attribute.getValue());
+                if (nodes == null) {
+                    continue;
+                }
+                nodes.remove(node);
+                if (nodes.isEmpty()) {
+                    values.remove(attribute.getValue());
+                    if (values.isEmpty()) {
+                        postings.remove(attribute.getKey());
+                    }
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public RoaringBitmap evaluate(MetadataFilter filter) {
+        lock.readLock().lock();
+        try {
+            return evaluateLocked(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap evaluateLocked(MetadataFilter filter) {
+        return switch (filter) {
+            case MetadataFilter.Match match -> {
+                RoaringBitmap result = new RoaringBitmap();
+                Map<String, RoaringBitmap> values = postings.get(match.key());
+                if (values != null) {
+                    for (String value : match.values()) {
+                        RoaringBitmap nodes = values.get(value);
+                        if (nodes != null) {
+                            result.or(nodes);
+                        }
+                    }
+                }
+                yield result;
+            }
+            case MetadataFilter.And and -> {
+                RoaringBitmap result = evaluateLocked(and.filters().get(0));
+                for (int i = 1; i < and.filters().size() && !result.isEmpty(); i++) {
+                    result.and(evaluateLocked(and.filters().get(i)));
+                }
+                yield result;
+            }
+            case MetadataFilter.Or or -> {
+                RoaringBitmap result = new RoaringBitmap();
+                for (MetadataFilter operand : or.filters()) {
+                    result.or(evaluateLocked(operand));
+                }
+                yield result;
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+package org.hnsw.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Metadata of every node, stored by column. Keys are interned into a small dictionary and each key owns a
+ * paged column of value ids indexed by node ordinal; the values themselves live once each in an off-heap
+ * {@link StringPool}. A namespace whose records share a few keys and low-cardinality values therefore costs
+ * about four bytes per key per node, instead of a map per record.
+ *
+ * <p>Rows are materialized on demand, so reads allocate and are meant for returning results, not for scoring.
+ */
+public final class MetadataStore {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final long MIN_RECLAIM_BYTES = 1 << 20;
+
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private String[] keys = new String[0];
+    /** {@code columns[key][page][slot]} is the value id plus one, or zero if the node has no such key. */
+    private int[][][] columns = new int[0][][];
+    private StringPool values = new StringPool();
+    private int[] references = new int[0];
+    private long liveBytes;
+    private long pages;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public Map<String, String> get(int node) {
+        lock.readLock().lock();
+        try {
+            int page = node >>> PAGE_SHIFT;
+            int slot = node & PAGE_MASK;
+            Map<String, String> row = null;
+            for (int key = 0; key < keys.length; key++) {
+                int[][] column = columns[key];
+                int value = page < column.length && column[page] != null ? column[page][slot] : 0;
+                if (value != 0) {
+                    if (row == null) {
+                        row = new HashMap<>();
+                    }
+                    row.put(keys[key], values.get(value - 1));
+                }
+            }
+            return row == null ? Map.of() : Collections.unmodifiableMap(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the row of {@code node}.
+     */
+    public void set(int node, Map<String, String> metadata) {
+        lock.writeLock().lock();
+        try {
+            clearLocked(node);
+            for (Map.Entry<String, String> attribute : metadata.entrySet()) {
+                int[][] column = column(key(attribute.getKey()), node >>> PAGE_SHIFT);
+                column[node >>> PAGE_SHIFT][node & PAGE_MASK] = retain(attribute.getValue()) + 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear(int node) {
+        lock.writeLock().lock();
+        try {
+            clearLocked(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return values.memoryBytes() + pages * PAGE_SIZE * Integer.BYTES + (long) references.length * Integer.BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the value pool without values no node refers to any more, once they make up most of it. Meant to
+     * run alongside index compaction.
+     *
+     * @return the number of bytes of value data dropped
+     */
+    public long reclaim() {
+        lock.writeLock().lock();
+        try {
+            long dead = values.usedBytes() - liveBytes;
+            if (dead < Math.max(liveBytes, MIN_RECLAIM_BYTES)) {
+                return 0;
+            }
+            StringPool compacted = new StringPool();
+            int[] remap = new int[values.size()];
+            int[] retained = new int[references.length];
+            for (int id = 0; id < values.size(); id++) {
+                if (references[id] > 0) {
+                    remap[id] = compacted.intern(values.get(id));
+                    retained[remap[id]] = references[id];
+                }
+            }
+            for (int[][] column : columns) {
+                for (int[] page : column) {
+                    if (page == null) {
+                        continue;
+                    }
+                    for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                        if (page[slot] != 0) {
+                            page[slot] = remap[page[slot] - 1] + 1;
+                        }
+                    }
+                }
+            }
+            values = compacted;
+            references = retained;
+            return dead;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clearLocked(int node) {
+        int page = node >>> PAGE_SHIFT;
+        int slot = node & PAGE_MASK;
+        for (int[][] column : columns) {
+            if (page < column.length && column[page] != null && column[page][slot] != 0) {
+                release(column[page][slot] - 1);
+                column[page][slot] = 0;
+            }
+        }
+    }
+
+    private int key(String key) {
+        Integer id = keyIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        int added = keys.length;
+        keys = Arrays.copyOf(keys, added + 1);
+        keys[added] = key;
+        columns = Arrays.copyOf(columns, added + 1);
+        columns[added] = new int[0][];
+        keyIds.put(key, added);
+        return added;
+    }
+
+    private int[][] column(int key, int page) {
+        int[][] column = columns[key];
+        if (page >= column.length) {
+            column = Arrays.copyOf(column, Math.max(page + 1, column.length * 2));
+            columns[key] = column;
+        }
+        if (column[page] == null) {
+            column[page] = new int[PAGE_SIZE];
+            pages++;
+        }
+        return column;
+    }
+
+    private int retain(String value) {
+        int id = values.intern(value);
+        if (id >= references.length) {
+            references = Arrays.copyOf(references, Math.max(id + 1, references.length * 2));
+        }
+        if (references[id]++ == 0) {
+            liveBytes += values.length(id);
+        }
+        return id;
+    }
+
+    private void release(int id) {
+        if (--references[id] == 0) {
+            liveBytes -= values.length(id);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.hnsw.filter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dictionary of distinct strings stored as UTF-8 in direct memory and identified by dense ids. An
+ * open-addressing table of ids finds the existing copy of a string without keeping it on the heap. Ids are
+ * never reused; {@link MetadataStore} rebuilds the pool once enough of it is dead. Not thread-safe.
+ */
+final class StringPool {
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private long[] locations = new long[64];
+    private int[] lengths = new int[64];
+    private int[] hashes = new int[64];
+    private int[] table = new int[128];
+    private int size;
+    private long usedBytes;
+    private long allocatedBytes;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Bytes of string data appended so far, live or not.
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    long memoryBytes() {
+        return allocatedBytes + (long) locations.length * (Long.BYTES + 2 * Integer.BYTES)
+                + (long) table.length * Integer.BYTES;
+    }
+
+    int length(int id) {
+        return lengths[id];
+    }
+
+    int intern(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = value.hashCode();
+        int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        for (int entry; (entry = table[slot]) != 0; slot = (slot + 1) & mask) {
+            int id = entry - 1;
+            if (hashes[id] == hash && matches(id, bytes)) {
+                return id;
+            }
+        }
+        int id = append(bytes, hash);
+        table[slot] = id + 1;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        byte[] bytes = new byte[lengths[id]];
+        long location = locations[id];
+        chunks.get((int) (location >>> 32)).get((int) location, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean matches(int id, byte[] bytes) {
+        if (lengths[id] != bytes.length) {
+            return false;
+        }
+        long location = locations[id];
+        ByteBuffer stored = chunks.get((int) (location >>> 32)).slice((int) location, bytes.length);
+        return stored.mismatch(ByteBuffer.wrap(bytes)) < 0;
+    }
+
+    private int append(byte[] bytes, int hash) {
+        if (current == null || current.remaining() < bytes.length) {
+            int capacity = Math.max(CHUNK_BYTES, bytes.length);
+            current = ByteBuffer.allocateDirect(capacity);
+            chunks.add(current);
+            allocatedBytes += capacity;
+        }
+        if (size == locations.length) {
+            locations = Arrays.copyOf(locations, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int id = size++;
+        locations[id] = (long) (chunks.size() - 1) << 32 | current.position();
+        lengths[id] = bytes.length;
+        hashes[id] = hash;
+        current.put(bytes);
+        usedBytes += bytes.length;
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] grown = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (grown[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            grown[slot] = id + 1;
+        }
+        table = grown;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,83 @@
+package org.hnsw.grpc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concurrency limit that follows observed latency, after the gradient algorithm of Netflix's
+ * concurrency-limits. Each completed call compares its latency with a long-term average: while calls are no
+ * slower than that the limit grows by a queue allowance of {@code sqrt(limit)}, and as they slow down it shrinks
+ * in proportion, by at most half per sample. Calls beyond the limit are refused rather than queued.
+ */
+final class AdaptiveLimiter {
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int WARMUP_SAMPLES = 10;
+    private static final int LONG_WINDOW = 600;
+    private static final double RECENT_WEIGHT = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private volatile long recentLatency;
+    private double estimate;
+    private double longLatency;
+    private long samples;
+
+    AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimate = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+        this.limit = (int) estimate;
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        update(Math.max(1, latencyNanos), current);
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Exponentially weighted latency of the last few dozen calls, or zero before the first one completes.
+     */
+    long recentLatencyNanos() {
+        return recentLatency;
+    }
+
+    private synchronized void update(long latency, int inFlight) {
+        samples++;
+        recentLatency = samples == 1 ? latency : (long) (recentLatency + RECENT_WEIGHT * (latency - recentLatency));
+        longLatency += (latency - longLatency) / (samples <= WARMUP_SAMPLES ? samples : LONG_WINDOW);
+        if (longLatency / latency > 2) {
+            // Latency dropped for good (a warmed-up cache, a smaller index): let the baseline follow.
+            longLatency *= 0.95;
+        }
+        if (inFlight < estimate / 2) {
+            // Too little load to say anything about the limit.
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / latency));
+        double target = estimate * gradient + Math.sqrt(estimate);
+        estimate = Math.max(minLimit, Math.min(maxLimit, estimate * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimate;
+    }
+}
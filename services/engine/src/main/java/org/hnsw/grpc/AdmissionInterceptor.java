@@ -0,0 +1,174 @@
+package org.hnsw.grpc;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Admits unary calls against an {@link AdaptiveLimiter} per namespace and {@link Lane}, and refuses the rest
+ * with {@code RESOURCE_EXHAUSTED} before they reach the service, so overload shows up as fast rejections instead
+ * of calls piling up on index locks. Queries whose deadline is shorter than the namespace's recent read latency
+ * are refused the same way. Streaming calls pass through; {@code BulkUpsert} is bounded by its own flow control.
+ * Calls naming a namespace that does not exist yet share one limiter per lane, so clients cannot grow the set of
+ * limiters by making names up.
+ *
+ * <p>The service handler is only started once the request message has been admitted.
+ */
+public final class AdmissionInterceptor implements ServerInterceptor {
+    private static final int INITIAL_LIMIT = 20;
+    private static final int MIN_LIMIT = 1;
+
+    private final int maxLimit;
+    private final Predicate<String> exists;
+    private final Map<Lane, ConcurrentMap<String, AdaptiveLimiter>> limiters = new EnumMap<>(Lane.class);
+    private final Map<Lane, AdaptiveLimiter> unknown = new EnumMap<>(Lane.class);
+
+    /**
+     * @param maxLimit the most calls a namespace may have in flight per lane, however well it is doing
+     * @param exists   whether a namespace exists; only those get a limiter of their own
+     */
+    public AdmissionInterceptor(int maxLimit, Predicate<String> exists) {
+        if (maxLimit < MIN_LIMIT) {
+            throw new IllegalArgumentException("Concurrency limit must be positive");
+        }
+        this.maxLimit = maxLimit;
+        this.exists = exists;
+        for (Lane lane : Lane.values()) {
+            limiters.put(lane, new ConcurrentHashMap<>());
+            unknown.put(lane, new AdaptiveLimiter(INITIAL_LIMIT, MIN_LIMIT, maxLimit));
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+        Lane lane = Lane.of(method.getBareMethodName());
+        if (lane == null || method.getType() != MethodDescriptor.MethodType.UNARY) {
+            return next.startCall(call, headers);
+        }
+        Deadline deadline = Context.current().getDeadline();
+        call.request(1);
+        return new ServerCall.Listener<>() {
+            private ServerCall.Listener<ReqT> delegate;
+            private AdaptiveLimiter limiter;
+            private long started;
+            private boolean ready;
+
+            @Override
+            public void onMessage(ReqT message) {
+                if (delegate == null) {
+                    String namespace = namespace(message);
+                    limiter = limiter(lane, namespace);
+                    Status rejection = admit(limiter, lane, namespace, deadline);
+                    if (rejection != null) {
+                        limiter = null;
+                        call.close(rejection, new Metadata());
+                        return;
+                    }
+                    started = System.nanoTime();
+                    delegate = next.startCall(call, headers);
+                    if (ready) {
+                        delegate.onReady();
+                    }
+                }
+                delegate.onMessage(message);
+            }
+
+            @Override
+            public void onHalfClose() {
+                if (delegate != null) {
+                    delegate.onHalfClose();
+                }
+            }
+
+            @Override
+            public void onCancel() {
+                if (delegate != null) {
+                    delegate.onCancel();
+                }
+                release();
+            }
+
+            @Override
+            public void onComplete() {
+                if (delegate != null) {
+                    delegate.onComplete();
+                }
+                release();
+            }
+
+            @Override
+            public void onReady() {
+                ready = true;
+                if (delegate != null) {
+                    delegate.onReady();
+                }
+            }
+
+            private void release() {
+                if (limiter != null) {
+                    limiter.release(System.nanoTime() - started);
+                    limiter = null;
+                }
+            }
+        };
+    }
+
+    private AdaptiveLimiter limiter(Lane lane, String namespace) {
+        if (!exists.test(namespace)) {
+            return unknown.get(lane);
+        }
+        return limiters.get(lane).computeIfAbsent(namespace,
+                ns -> new AdaptiveLimiter(INITIAL_LIMIT, MIN_LIMIT, maxLimit));
+    }
+
+    /**
+     * Takes a slot from {@code limiter}, or returns the status to refuse the call with.
+     */
+    private static Status admit(AdaptiveLimiter limiter, Lane lane, String namespace, Deadline deadline) {
+        if (lane == Lane.READ && deadline != null) {
+            long remaining = deadline.timeRemaining(TimeUnit.NANOSECONDS);
+            long expected = limiter.recentLatencyNanos();
+            if (remaining < expected) {
+                return Status.RESOURCE_EXHAUSTED.withDescription(String.format(
+                        "Deadline of %d ms is shorter than the %d ms queries on namespace '%s' currently take",
+                        TimeUnit.NANOSECONDS.toMillis(remaining), TimeUnit.NANOSECONDS.toMillis(expected),
+                        namespace));
+            }
+        }
+        if (!limiter.tryAcquire()) {
+            return Status.RESOURCE_EXHAUSTED.withDescription(String.format(
+                    "Namespace '%s' is at its limit of %d concurrent %s calls", namespace, limiter.limit(),
+                    lane.name().toLowerCase(Locale.ROOT)));
+        }
+        return null;
+    }
+
+    private static String namespace(Object message) {
+        if (message instanceof Message request) {
+            FieldDescriptor field = request.getDescriptorForType().findFieldByName("namespace");
+            if (field != null && field.getJavaType() == FieldDescriptor.JavaType.STRING) {
+                String namespace = (String) request.getField(field);
+                if (!namespace.isBlank()) {
+                    return namespace;
+                }
+            }
+        }
+        return "default";
+    }
+}
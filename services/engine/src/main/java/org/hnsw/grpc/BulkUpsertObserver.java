@@ -0,0 +1,194 @@
+package org.hnsw.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.hnsw.VectorRecord;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.store.IndexOptions;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vector_service.VectorServiceOuterClass.BulkUpsertRequest;
+import vector_service.VectorServiceOuterClass.BulkUpsertResponse;
+
+/**
+ * Server side of a {@code BulkUpsert} stream. Records are routed to builder lanes by id hash so that repeated
+ * ids are applied in stream order, collected into batches, and each lane applies its batches sequentially on
+ * the builder executor. The client is only asked for the next message while fewer than two batches per lane
+ * are in flight.
+ */
+final class BulkUpsertObserver implements StreamObserver<BulkUpsertRequest> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BulkUpsertObserver.class);
+    private static final int BATCH_SIZE = 1024;
+    private static final long PROGRESS_INTERVAL = 100_000;
+
+    private final NamespaceIndexRegistry registry;
+    private final ServerCallStreamObserver<BulkUpsertResponse> responseObserver;
+    private final Executor buildExecutor;
+    private final Function<BulkUpsertRequest, IndexOptions> optionsResolver;
+    private final List<List<VectorRecord>> pending = new ArrayList<>();
+    private final List<CompletableFuture<Void>> lanes = new ArrayList<>();
+    private final int maxInFlight;
+    private final long started = System.nanoTime();
+
+    private String namespace;
+    private IndexOptions options;
+    private boolean rebuild;
+    private VectorIndex target;
+    private int inFlight;
+    private int batches;
+    private long upserted;
+    private long nextProgress = PROGRESS_INTERVAL;
+    private boolean requestDeferred;
+    private boolean halfClosed;
+    private boolean finished;
+    private Throwable failure;
+
+    BulkUpsertObserver(NamespaceIndexRegistry registry, ServerCallStreamObserver<BulkUpsertResponse> responseObserver,
+                       Executor buildExecutor, int builders,
+                       Function<BulkUpsertRequest, IndexOptions> optionsResolver) {
+        this.registry = registry;
+        this.responseObserver = responseObserver;
+        this.buildExecutor = buildExecutor;
+        this.optionsResolver = optionsResolver;
+        this.maxInFlight = builders * 2;
+        for (int i = 0; i < builders; i++) {
+            pending.add(new ArrayList<>(BATCH_SIZE));
+            lanes.add(CompletableFuture.completedFuture(null));
+        }
+        responseObserver.disableAutoRequest();
+        responseObserver.request(1);
+    }
+
+    @Override
+    public synchronized void onNext(BulkUpsertRequest request) {
+        if (finished || failure != null) {
+            return;
+        }
+        try {
+            if (namespace == null) {
+                namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
+                options = optionsResolver.apply(request);
+                rebuild = request.getRebuild();
+            }
+            for (var vector : request.getVectorsList()) {
+                VectorRecord record = VectorServiceImpl.toRecord(vector);
+                if (rebuild && target == null) {
+                    target = registry.newIndex(record.dimension(), options);
+                }
+                int lane = (record.id().hashCode() & 0x7fffffff) % pending.size();
+                List<VectorRecord> batch = pending.get(lane);
+                batch.add(record);
+                if (batch.size() >= BATCH_SIZE) {
+                    dispatch(lane);
+                }
+            }
+        } catch (RuntimeException ex) {
+            failure = ex;
+            finishIfDone();
+            return;
+        }
+        if (inFlight < maxInFlight) {
+            responseObserver.request(1);
+        } else {
+            requestDeferred = true;
+        }
+    }
+
+    @Override
+    public synchronized void onError(Throwable t) {
+        LOGGER.warn("Bulk upsert into '{}' aborted by client after {} vectors", namespace, upserted);
+        failure = t;
+        finished = true;
+    }
+
+    @Override
+    public synchronized void onCompleted() {
+        halfClosed = true;
+        if (failure == null) {
+            for (int lane = 0; lane < pending.size(); lane++) {
+                if (!pending.get(lane).isEmpty()) {
+                    dispatch(lane);
+                }
+            }
+        }
+        finishIfDone();
+    }
+
+    private void dispatch(int lane) {
+        List<VectorRecord> batch = pending.set(lane, new ArrayList<>(BATCH_SIZE));
+        inFlight++;
+        lanes.set(lane, lanes.get(lane)
+                .thenRunAsync(() -> apply(batch), buildExecutor)
+                .whenComplete((ignored, ex) -> completed(batch.size(), ex)));
+    }
+
+    private void apply(List<VectorRecord> batch) {
+        if (rebuild) {
+            target.upsertAll(batch);
+        } else {
+            registry.upsert(namespace, options, batch);
+        }
+    }
+
+    private synchronized void completed(int size, Throwable ex) {
+        inFlight--;
+        batches++;
+        if (ex != null) {
+            if (failure == null) {
+                failure = ex instanceof CompletionException && ex.getCause() != null
+                        ? ex.getCause() : ex;
+            }
+        } else {
+            upserted += size;
+            if (upserted >= nextProgress) {
+                nextProgress += PROGRESS_INTERVAL;
+                long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                LOGGER.info("Bulk upsert into '{}': {} vectors ({} vectors/s)",
+                        namespace, upserted, upserted * 1000 / elapsed);
+            }
+        }
+        if (requestDeferred && inFlight < maxInFlight && failure == null && !halfClosed) {
+            requestDeferred = false;
+            responseObserver.request(1);
+        }
+        finishIfDone();
+    }
+
+    private void finishIfDone() {
+        if (finished || inFlight > 0 || (!halfClosed && failure == null)) {
+            return;
+        }
+        finished = true;
+        if (failure != null) {
+            Status status = failure instanceof IllegalArgumentException ? Status.INVALID_ARGUMENT : Status.INTERNAL;
+            responseObserver.onError(status.withDescription(failure.getMessage()).asRuntimeException());
+            return;
+        }
+        try {
+            if (rebuild && target != null) {
+                registry.publish(namespace, target);
+            }
+        } catch (RuntimeException ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException());
+            return;
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        LOGGER.info("Bulk upsert into '{}' finished: {} vectors in {} batches, {} ms{}",
+                namespace, upserted, batches, elapsed, rebuild ? " (rebuilt and published)" : "");
+        responseObserver.onNext(BulkUpsertResponse.newBuilder()
+                .setUpsertedCount(upserted)
+                .setBatches(batches)
+                .setElapsedMs(elapsed)
+                .build());
+        responseObserver.onCompleted();
+    }
+}
@@ -0,0 +1,224 @@
+package org.hnsw.grpc;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.hnsw.VectorRecord;
+import org.hnsw.persistence.SnapshotOutput;
+import org.hnsw.store.ChangeFeed;
+import org.hnsw.store.ChangeFeed.Change;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vector_service.VectorServiceOuterClass.ChangeEvent;
+import vector_service.VectorServiceOuterClass.DeleteChange;
+import vector_service.VectorServiceOuterClass.SnapshotChunk;
+import vector_service.VectorServiceOuterClass.UpsertChange;
+import vector_service.VectorServiceOuterClass.Vector;
+import vector_service.VectorServiceOuterClass.VectorEncoding;
+
+/**
+ * Server side of a {@code Subscribe} stream, run on its own virtual thread. Starts with a snapshot unless the
+ * subscriber's position is still retained, then sends the feed with consecutive upserts and deletes merged into
+ * events of about {@value #EVENT_BYTES} bytes, and a heartbeat after a second without changes. Events are only
+ * sent while the transport is ready, so a slow subscriber holds back its own thread rather than buffering. The
+ * stream completes when the feed is closed at shutdown.
+ */
+final class FeedSubscription implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeedSubscription.class);
+    private static final long HEARTBEAT_MILLIS = 1_000;
+    private static final int MAX_CHANGES = 1_024;
+    private static final long EVENT_BYTES = 1 << 20;
+    private static final int CHUNK_BYTES = 1 << 20;
+
+    private final NamespaceIndexRegistry registry;
+    private final ChangeFeed feed;
+    private final String namespace;
+    private final ServerCallStreamObserver<ChangeEvent> responseObserver;
+    private final Object readiness = new Object();
+    private long cursor;
+    private volatile boolean cancelled;
+    private volatile Thread thread;
+
+    /**
+     * @param after sequence the subscriber has applied, or -1 to start from a snapshot
+     */
+    FeedSubscription(NamespaceIndexRegistry registry, ChangeFeed feed, String namespace, long after,
+                     ServerCallStreamObserver<ChangeEvent> responseObserver) {
+        this.registry = registry;
+        this.feed = feed;
+        this.namespace = namespace;
+        this.cursor = after;
+        this.responseObserver = responseObserver;
+        responseObserver.setOnReadyHandler(() -> {
+            synchronized (readiness) {
+                readiness.notifyAll();
+            }
+        });
+        responseObserver.setOnCancelHandler(() -> {
+            cancelled = true;
+            Thread running = thread;
+            if (running != null) {
+                running.interrupt();
+            }
+        });
+    }
+
+    void start() {
+        thread = Thread.ofVirtual().name("subscribe-" + namespace).start(this);
+    }
+
+    @Override
+    public void run() {
+        feed.addSubscriber(namespace);
+        try {
+            while (!cancelled && !feed.isClosed()) {
+                ChangeFeed.Read read = cursor < 0 ? null
+                        : feed.read(namespace, cursor, MAX_CHANGES, HEARTBEAT_MILLIS);
+                if (read == null || read.resync()) {
+                    sendSnapshot();
+                } else if (read.changes().isEmpty()) {
+                    send(event(cursor, read.headTimestampMillis(), read));
+                } else {
+                    sendChanges(read);
+                }
+            }
+            if (!cancelled) {
+                responseObserver.onCompleted();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            fail(Status.CANCELLED.withDescription("Interrupted"));
+        } catch (StatusRuntimeException ex) {
+            fail(ex.getStatus());
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.warn("Subscription to namespace '{}' failed", namespace, ex);
+            fail(Status.INTERNAL.withDescription(ex.getMessage()));
+        } finally {
+            feed.removeSubscriber(namespace);
+        }
+    }
+
+    private void sendChanges(ChangeFeed.Read read) throws InterruptedException {
+        List<Change> changes = read.changes();
+        int from = 0;
+        while (from < changes.size()) {
+            Change first = changes.get(from);
+            int to = from;
+            long bytes = 0;
+            while (to < changes.size() && changes.get(to).type() == first.type()
+                    && (to == from || bytes + changes.get(to).bytes() <= EVENT_BYTES)) {
+                bytes += changes.get(to).bytes();
+                to++;
+            }
+            Change last = changes.get(to - 1);
+            ChangeEvent.Builder event = event(last.sequence(), last.timestampMillis(), read);
+            if (first.type() == ChangeFeed.Type.UPSERT) {
+                UpsertChange.Builder upsert = UpsertChange.newBuilder();
+                for (Change change : changes.subList(from, to)) {
+                    for (VectorRecord record : change.records()) {
+                        upsert.addVectors(Vector.newBuilder()
+                                .setId(record.id())
+                                .setPackedValues(PackedVectors.encode(record.values(),
+                                        VectorEncoding.VECTOR_ENCODING_FLOAT32))
+                                .putAllMetadata(record.metadata()));
+                    }
+                }
+                event.setUpsert(upsert);
+            } else {
+                DeleteChange.Builder delete = DeleteChange.newBuilder();
+                for (Change change : changes.subList(from, to)) {
+                    delete.addAllIds(change.ids());
+                }
+                event.setDelete(delete);
+            }
+            send(event);
+            cursor = last.sequence();
+            from = to;
+        }
+    }
+
+    /**
+     * Writes the namespace to a scratch file with its writes paused, noting the feed position it corresponds to,
+     * and streams the file in chunks.
+     */
+    private void sendSnapshot() throws IOException, InterruptedException {
+        if (registry.get(namespace) == null) {
+            throw Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException();
+        }
+        Path file = Files.createTempFile("hensaw-subscribe", ".snap");
+        try {
+            ChangeFeed.Position position = registry.withWritesPaused(namespace, index -> {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                     SnapshotOutput out = new SnapshotOutput(channel)) {
+                    index.writeSnapshot(out);
+                    out.flush();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return feed.head(namespace);
+            });
+            if (position == null) {
+                throw Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException();
+            }
+            ChangeFeed.Read head = new ChangeFeed.Read(false, List.of(), position.sequence(),
+                    position.timestampMillis());
+            long size = Files.size(file);
+            try (InputStream in = Files.newInputStream(file)) {
+                long sent = 0;
+                do {
+                    byte[] chunk = in.readNBytes((int) Math.min(CHUNK_BYTES, size - sent));
+                    sent += chunk.length;
+                    send(event(position.sequence(), position.timestampMillis(), head)
+                            .setSnapshot(SnapshotChunk.newBuilder()
+                                    .setData(ByteString.copyFrom(chunk))
+                                    .setLast(sent >= size)));
+                } while (sent < size);
+            }
+            LOGGER.info("Sent snapshot of namespace '{}' at sequence {} ({} bytes)", namespace, position.sequence(),
+                    size);
+            cursor = position.sequence();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private ChangeEvent.Builder event(long sequence, long timestampMillis, ChangeFeed.Read read) {
+        return ChangeEvent.newBuilder()
+                .setNamespace(namespace)
+                .setEpoch(feed.epoch())
+                .setSequence(sequence)
+                .setTimestampMs(timestampMillis)
+                .setHeadSequence(Math.max(sequence, read.head()))
+                .setHeadTimestampMs(Math.max(timestampMillis, read.headTimestampMillis()));
+    }
+
+    private void send(ChangeEvent.Builder event) throws InterruptedException {
+        synchronized (readiness) {
+            while (!responseObserver.isReady() && !cancelled) {
+                readiness.wait(HEARTBEAT_MILLIS);
+            }
+        }
+        if (cancelled) {
+            throw new InterruptedException();
+        }
+        responseObserver.onNext(event.build());
+    }
+
+    private void fail(Status status) {
+        if (!cancelled) {
+            responseObserver.onError(status.asRuntimeException());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.hnsw.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import java.util.concurrent.Executor;
+
+/**
+ * Priority lane of an RPC. Reads and writes are admitted against separate limits and run on separate executors.
+ * With pooled executors a burst of ingest can take neither the threads nor the admission slots that queries need;
+ * with virtual threads both executors share the JVM's carrier threads, and only the admission slots are kept
+ * apart.
+ */
+public enum Lane {
+    READ,
+    WRITE;
+
+    /**
+     * Lane of a method by its bare name, or {@code null} for administrative methods, which bypass admission
+     * control.
+     */
+    public static Lane of(String method) {
+        return switch (method) {
+            case "Query", "QueryBatch" -> READ;
+            case "Upsert", "BulkUpsert", "Delete" -> WRITE;
+            default -> null;
+        };
+    }
+
+    /**
+     * Runs write calls on {@code writes} and leaves everything else on the server's default executor.
+     */
+    public static ServerCallExecutorSupplier executors(Executor writes) {
+        return new ServerCallExecutorSupplier() {
+            @Override
+            public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+                return of(call.getMethodDescriptor().getBareMethodName()) == WRITE ? writes : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package org.hnsw.grpc;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import org.hnsw.metrics.RpcMetrics;
+
+/**
+ * Records the latency and outcome of every call, measured from the moment the call starts until the server
+ * closes it.
+ */
+public final class MetricsInterceptor implements ServerInterceptor {
+    private final RpcMetrics metrics;
+
+    public MetricsInterceptor(RpcMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        long started = System.nanoTime();
+        String method = call.getMethodDescriptor().getBareMethodName();
+        return next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                metrics.record(method, System.nanoTime() - started, !status.isOk());
+                super.close(status, trailers);
+            }
+        }, headers);
+    }
+}
@@ -0,0 +1,87 @@
+package org.hnsw.grpc;
+
+import com.google.protobuf.UnsafeByteOperations;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import vector_service.VectorServiceOuterClass.PackedVector;
+import vector_service.VectorServiceOuterClass.VectorEncoding;
+
+/**
+ * Converts between float arrays and {@link PackedVector}s. Decoding reads the message's bytes in place and
+ * encoding hands a freshly filled array to protobuf without a defensive copy.
+ */
+final class PackedVectors {
+
+    private PackedVectors() {
+    }
+
+    static float[] decode(PackedVector packed) {
+        ByteBuffer data = packed.getData().asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        int bytes = data.remaining();
+        return switch (packed.getEncoding()) {
+            case VECTOR_ENCODING_FLOAT32 -> {
+                checkLength(bytes, Float.BYTES);
+                float[] values = new float[bytes / Float.BYTES];
+                data.asFloatBuffer().get(values);
+                yield values;
+            }
+            case VECTOR_ENCODING_FLOAT16 -> {
+                checkLength(bytes, Short.BYTES);
+                float[] values = new float[bytes / Short.BYTES];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Float.float16ToFloat(data.getShort());
+                }
+                yield values;
+            }
+            case VECTOR_ENCODING_INT8 -> {
+                float scale = packed.getScale();
+                if (!(scale > 0) || Float.isInfinite(scale)) {
+                    throw new IllegalArgumentException("INT8 vectors need a positive scale");
+                }
+                float[] values = new float[bytes];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = data.get() * scale;
+                }
+                yield values;
+            }
+            default -> throw new IllegalArgumentException("Unknown vector encoding " + packed.getEncodingValue());
+        };
+    }
+
+    static PackedVector encode(float[] values, VectorEncoding encoding) {
+        PackedVector.Builder packed = PackedVector.newBuilder().setEncoding(encoding);
+        ByteBuffer data;
+        switch (encoding) {
+            case VECTOR_ENCODING_FLOAT32 -> {
+                data = ByteBuffer.allocate(values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                data.asFloatBuffer().put(values);
+            }
+            case VECTOR_ENCODING_FLOAT16 -> {
+                data = ByteBuffer.allocate(values.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                for (float value : values) {
+                    data.putShort(Float.floatToFloat16(value));
+                }
+            }
+            case VECTOR_ENCODING_INT8 -> {
+                float max = 0f;
+                for (float value : values) {
+                    max = Math.max(max, Math.abs(value));
+                }
+                float scale = max > 0 ? max / Byte.MAX_VALUE : 1f;
+                data = ByteBuffer.allocate(values.length);
+                for (float value : values) {
+                    data.put((byte) Math.round(value / scale));
+                }
+                packed.setScale(scale);
+            }
+            default -> throw new IllegalArgumentException("Unknown vector encoding " + encoding);
+        }
+        return packed.setData(UnsafeByteOperations.unsafeWrap(data.array())).build();
+    }
+
+    private static void checkLength(int bytes, int elementBytes) {
+        if (bytes % elementBytes != 0) {
+            throw new IllegalArgumentException("Packed vector length " + bytes + " is not a multiple of " + elementBytes);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.hnsw.grpc;
+
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+/**
+ * Refuses the calls of the {@link Lane#WRITE write lane} with {@code FAILED_PRECONDITION}, for replicas, whose
+ * namespaces only change through their primary's feed.
+ */
+public final class ReadOnlyInterceptor implements ServerInterceptor {
+    private final String primary;
+
+    /**
+     * @param primary address of the primary, named in the refusal so clients know where to write instead
+     */
+    public ReadOnlyInterceptor(String primary) {
+        this.primary = primary;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        if (Lane.of(call.getMethodDescriptor().getBareMethodName()) != Lane.WRITE) {
+            return next.startCall(call, headers);
+        }
+        call.close(Status.FAILED_PRECONDITION.withDescription("Read-only replica; write to " + primary),
+                new Metadata());
+        return new ServerCall.Listener<>() {
+        };
+    }
+}
@@ -0,0 +1,268 @@
+package org.hnsw.grpc;
+
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.StatusRuntimeException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import vector_service.VectorServiceGrpc;
+import vector_service.VectorServiceOuterClass.ChangeEvent;
+import vector_service.VectorServiceOuterClass.NamespaceStats;
+import vector_service.VectorServiceOuterClass.StatsRequest;
+import vector_service.VectorServiceOuterClass.SubscribeRequest;
+import vector_service.VectorServiceOuterClass.Vector;
+
+/**
+ * Read replica of another engine. Each namespace of the primary is followed on its own virtual thread through
+ * {@code Subscribe}: snapshots replace the local namespace and every event of upserts or deletes is applied as one
+ * batch. After a disconnect the follower resumes from the last applied event, and the primary decides whether
+ * that still works or a new snapshot is needed. The primary's namespaces are listed again every few seconds, so
+ * new ones are picked up.
+ */
+public final class Replica implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Replica.class);
+    private static final long DISCOVERY_SECONDS = 5;
+    private static final long RETRY_MILLIS = 1_000;
+
+    private final NamespaceIndexRegistry registry;
+    private final DistanceFunction distanceFunction;
+    private final ManagedChannel channel;
+    private final List<String> namespaces;
+    private final ConcurrentMap<String, Follower> followers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-discovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean closed;
+
+    /**
+     * Replication progress of one namespace.
+     *
+     * @param lagMillis how much earlier, in the primary's clock, the last applied change was written than the
+     *                  latest one; 0 when caught up
+     */
+    public record Progress(boolean connected, long appliedSequence, long headSequence, long lagMillis) {
+    }
+
+    /**
+     * @param channel    channel to the primary
+     * @param namespaces namespaces to follow, or empty to follow all of the primary's
+     */
+    public Replica(NamespaceIndexRegistry registry, DistanceFunction distanceFunction, ManagedChannel channel,
+                   List<String> namespaces) {
+        this.registry = registry;
+        this.distanceFunction = distanceFunction;
+        this.channel = channel;
+        this.namespaces = List.copyOf(namespaces);
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::discoverQuietly, 0, DISCOVERY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Progress of a followed namespace, or {@code null} if it is not followed.
+     */
+    public Progress progress(String namespace) {
+        Follower follower = followers.get(namespace);
+        return follower == null ? null : follower.progress();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        followers.values().forEach(Follower::stop);
+        channel.shutdownNow();
+    }
+
+    private void discoverQuietly() {
+        try {
+            List<String> followed = namespaces;
+            if (followed.isEmpty()) {
+                followed = new ArrayList<>();
+                for (NamespaceStats stats : VectorServiceGrpc.newBlockingStub(channel)
+                        .withDeadlineAfter(DISCOVERY_SECONDS, TimeUnit.SECONDS)
+                        .stats(StatsRequest.getDefaultInstance())
+                        .getNamespacesList()) {
+                    followed.add(stats.getNamespace());
+                }
+            }
+            for (String namespace : followed) {
+                followers.computeIfAbsent(namespace, ns -> {
+                    Follower follower = new Follower(ns);
+                    follower.thread.start();
+                    return follower;
+                });
+            }
+        } catch (StatusRuntimeException ex) {
+            LOGGER.warn("Failed to list the primary's namespaces: {}", ex.getStatus());
+        }
+    }
+
+    private final class Follower implements Runnable {
+        private final String namespace;
+        private final Thread thread;
+        private volatile Context.CancellableContext context;
+        private volatile boolean connected;
+        private volatile long epoch;
+        private volatile long applied;
+        private volatile long appliedTimestamp;
+        private volatile long head;
+        private volatile long headTimestamp;
+        private Path snapshot;
+        private OutputStream snapshotOut;
+
+        Follower(String namespace) {
+            this.namespace = namespace;
+            this.thread = Thread.ofVirtual().name("replica-" + namespace).unstarted(this);
+        }
+
+        Progress progress() {
+            long appliedSequence = applied;
+            long headSequence = Math.max(head, appliedSequence);
+            long lag = appliedSequence >= headSequence ? 0 : Math.max(0, headTimestamp - appliedTimestamp);
+            return new Progress(connected, appliedSequence, headSequence, lag);
+        }
+
+        void stop() {
+            Context.CancellableContext running = context;
+            if (running != null) {
+                running.cancel(null);
+            }
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                try {
+                    follow();
+                } catch (StatusRuntimeException ex) {
+                    if (!closed) {
+                        LOGGER.warn("Lost the feed of namespace '{}': {}", namespace, ex.getStatus());
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    LOGGER.error("Failed to apply the feed of namespace '{}'", namespace, ex);
+                } finally {
+                    connected = false;
+                    discardSnapshot();
+                }
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }
+
+        private void follow() throws IOException {
+            Context.CancellableContext cancellable = Context.current().withCancellation();
+            context = cancellable;
+            Context previous = cancellable.attach();
+            try {
+                Iterator<ChangeEvent> events = VectorServiceGrpc.newBlockingStub(channel)
+                        .subscribe(SubscribeRequest.newBuilder()
+                                .setNamespace(namespace)
+                                .setEpoch(epoch)
+                                .setAfterSequence(applied)
+                                .build());
+                while (events.hasNext()) {
+                    connected = true;
+                    apply(events.next());
+                }
+            } finally {
+                cancellable.detach(previous);
+                cancellable.cancel(null);
+            }
+        }
+
+        private void apply(ChangeEvent event) throws IOException {
+            switch (event.getChangeCase()) {
+                case UPSERT -> {
+                    List<VectorRecord> records = new ArrayList<>(event.getUpsert().getVectorsCount());
+                    for (Vector vector : event.getUpsert().getVectorsList()) {
+                        records.add(VectorServiceImpl.toRecord(vector));
+                    }
+                    registry.upsert(namespace, registry.defaultOptions(), records);
+                }
+                case DELETE -> registry.delete(namespace, event.getDelete().getIdsList());
+                case SNAPSHOT -> {
+                    if (!applySnapshotChunk(event)) {
+                        return;
+                    }
+                }
+                case CHANGE_NOT_SET -> {
+                }
+            }
+            epoch = event.getEpoch();
+            applied = event.getSequence();
+            appliedTimestamp = event.getTimestampMs();
+            head = event.getHeadSequence();
+            headTimestamp = event.getHeadTimestampMs();
+        }
+
+        /**
+         * Appends a chunk to the snapshot being received and installs it after the last one.
+         *
+         * @return whether the snapshot is complete
+         */
+        private boolean applySnapshotChunk(ChangeEvent event) throws IOException {
+            if (snapshot == null) {
+                snapshot = Files.createTempFile("hensaw-replica", ".snap");
+                snapshotOut = Files.newOutputStream(snapshot);
+            }
+            event.getSnapshot().getData().writeTo(snapshotOut);
+            if (!event.getSnapshot().getLast()) {
+                return false;
+            }
+            snapshotOut.close();
+            long started = System.nanoTime();
+            VectorIndex index;
+            try (FileChannel file = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                index = VectorIndex.readSnapshot(new SnapshotInput(file), distanceFunction);
+            } finally {
+                discardSnapshot();
+            }
+            registry.publish(namespace, index);
+            LOGGER.info("Replicated namespace '{}' at sequence {} ({} vectors) in {} ms", namespace,
+                    event.getSequence(), index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            return true;
+        }
+
+        private void discardSnapshot() {
+            if (snapshot == null) {
+                return;
+            }
+            try {
+                snapshotOut.close();
+                Files.deleteIfExists(snapshot);
+            } catch (IOException ex) {
+                LOGGER.warn("Failed to delete partial snapshot {}", snapshot, ex);
+            }
+            snapshot = null;
+            snapshotOut = null;
+        }
+    }
+}
@@ -1,27 +1,99 @@
 package org.hnsw.grpc;
 
+import com.google.protobuf.Internal;
 import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import org.hnsw.VectorRecord;
-import org.hnsw.hnsw.HnswIndex;
+import org.hnsw.filter.MetadataFilter;
 import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.metrics.EvictionMetrics;
+import org.hnsw.metrics.Histogram;
+import org.hnsw.metrics.IndexMetrics;
+import org.hnsw.metrics.RpcMetrics;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.store.ChangeFeed;
+import org.hnsw.store.IndexOptions;
 import org.hnsw.store.NamespaceIndexRegistry;
+import org.hnsw.store.QueryCache;
 import vector_service.VectorServiceGrpc;
+import vector_service.VectorServiceOuterClass.BatchQuery;
+import vector_service.VectorServiceOuterClass.BulkUpsertRequest;
+import vector_service.VectorServiceOuterClass.BulkUpsertResponse;
+import vector_service.VectorServiceOuterClass.ChangeEvent;
+import vector_service.VectorServiceOuterClass.DeleteRequest;
+import vector_service.VectorServiceOuterClass.DeleteResponse;
+import vector_service.VectorServiceOuterClass.Filter;
+import vector_service.VectorServiceOuterClass.HistogramSummary;
+import vector_service.VectorServiceOuterClass.LevelDegrees;
 import vector_service.VectorServiceOuterClass.Match;
+import vector_service.VectorServiceOuterClass.MemoryStats;
+import vector_service.VectorServiceOuterClass.NamespaceOptions;
+import vector_service.VectorServiceOuterClass.NamespaceStats;
+import vector_service.VectorServiceOuterClass.OptimizeRequest;
+import vector_service.VectorServiceOuterClass.OptimizeResponse;
+import vector_service.VectorServiceOuterClass.QueryBatchRequest;
+import vector_service.VectorServiceOuterClass.QueryBatchResponse;
+import vector_service.VectorServiceOuterClass.QueryCacheStats;
 import vector_service.VectorServiceOuterClass.QueryRequest;
 import vector_service.VectorServiceOuterClass.QueryResponse;
+import vector_service.VectorServiceOuterClass.ReplicationStats;
+import vector_service.VectorServiceOuterClass.RpcStats;
+import vector_service.VectorServiceOuterClass.StatsRequest;
+import vector_service.VectorServiceOuterClass.StatsResponse;
+import vector_service.VectorServiceOuterClass.SubscribeRequest;
 import vector_service.VectorServiceOuterClass.UpsertRequest;
 import vector_service.VectorServiceOuterClass.UpsertResponse;
 import vector_service.VectorServiceOuterClass.Vector;
+import vector_service.VectorServiceOuterClass.VectorEncoding;
 
 public class VectorServiceImpl extends VectorServiceGrpc.VectorServiceImplBase {
+    private static final int DEFAULT_TOP_K = 5;
+
     private final NamespaceIndexRegistry registry;
+    private final ExecutorService searchExecutor;
+    private final ExecutorService buildExecutor;
+    private final int buildThreads;
+    private final RpcMetrics rpcMetrics;
+    private final ChangeFeed changeFeed;
+    private final Replica replica;
 
     public VectorServiceImpl(NamespaceIndexRegistry registry) {
+        this(registry, ForkJoinPool.commonPool(), ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(),
+                new RpcMetrics(), null, null);
+    }
+
+    /**
+     * @param searchExecutor bounded executor that runs the queries of a {@code QueryBatch} in parallel
+     * @param buildExecutor  executor with {@code buildThreads} threads that inserts {@code BulkUpsert} batches
+     * @param rpcMetrics     per-method metrics reported by {@code Stats}, filled by a {@link MetricsInterceptor}
+     * @param changeFeed     the registry's journal served by {@code Subscribe}, or {@code null} if disabled
+     * @param replica        the replication progress reported by {@code Stats}, or {@code null} on a primary
+     */
+    public VectorServiceImpl(NamespaceIndexRegistry registry, ExecutorService searchExecutor,
+                             ExecutorService buildExecutor, int buildThreads, RpcMetrics rpcMetrics,
+                             ChangeFeed changeFeed, Replica replica) {
         this.registry = registry;
+        this.searchExecutor = searchExecutor;
+        this.buildExecutor = buildExecutor;
+        this.buildThreads = buildThreads;
+        this.rpcMetrics = rpcMetrics;
+        this.changeFeed = changeFeed;
+        this.replica = replica;
     }
 
     @Override
@@ -44,13 +116,7 @@ public class VectorServiceImpl extends VectorServiceGrpc.VectorServiceImplBase {
         }
 
         try {
-            HnswIndex index = registry.getOrCreate(namespace, records.get(0).dimension());
-            for (VectorRecord record : records) {
-                if (record.dimension() != index.getDimension()) {
-                    throw new IllegalArgumentException("All vectors must match dimension " + index.getDimension());
-                }
-                index.upsert(record);
-            }
+            registry.upsert(namespace, toOptions(request.getOptions()), records);
             responseObserver.onNext(UpsertResponse.newBuilder().setUpsertedCount(records.size()).build());
             responseObserver.onCompleted();
         } catch (IllegalArgumentException ex) {
@@ -60,26 +126,78 @@ public class VectorServiceImpl extends VectorServiceGrpc.VectorServiceImplBase {
         }
     }
 
+    @Override
+    public StreamObserver<BulkUpsertRequest> bulkUpsert(StreamObserver<BulkUpsertResponse> responseObserver) {
+        return new BulkUpsertObserver(registry, (ServerCallStreamObserver<BulkUpsertResponse>) responseObserver,
+                buildExecutor, buildThreads, request -> toOptions(request.getOptions()));
+    }
+
     @Override
     public void query(QueryRequest request, StreamObserver<QueryResponse> responseObserver) {
         String namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
-        HnswIndex index = registry.get(namespace);
+        VectorIndex index = registry.get(namespace);
         if (index == null) {
             responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
             return;
         }
 
-        float[] queryVector = toArray(request.getVectorList());
-        int topK = request.getTopK() > 0 ? request.getTopK() : 5;
+        int topK = request.getTopK() > 0 ? request.getTopK() : DEFAULT_TOP_K;
+        VectorEncoding packing = request.getPackedValues() ? request.getValuesEncoding() : null;
+
+        try {
+            float[] queryVector = request.hasPackedVector()
+                    ? PackedVectors.decode(request.getPackedVector())
+                    : toArray(request.getVectorList());
+            MetadataFilter filter = request.hasFilter() ? toFilter(request.getFilter()) : null;
+            List<SearchResult> matches = registry.queryCache(namespace)
+                    .search(index, queryVector, topK, filter, toParams(request.getParams()));
+            responseObserver.onNext(toResponse(matches, request.getIncludeValues(), request.getIncludeMetadata(),
+                    packing));
+            responseObserver.onCompleted();
+        } catch (IllegalArgumentException ex) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(ex.getMessage()).asRuntimeException());
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void queryBatch(QueryBatchRequest request, StreamObserver<QueryBatchResponse> responseObserver) {
+        String namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
+        VectorIndex index = registry.get(namespace);
+        if (index == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
+            return;
+        }
 
+        boolean includeValues = request.getIncludeValues();
+        boolean includeMetadata = request.getIncludeMetadata();
+        VectorEncoding packing = request.getPackedValues() ? request.getValuesEncoding() : null;
+        QueryCache cache = registry.queryCache(namespace);
         try {
-            List<SearchResult> matches = index.search(queryVector, topK);
-            QueryResponse.Builder builder = QueryResponse.newBuilder();
-            for (SearchResult result : matches) {
-                builder.addMatches(toMatch(result, request.getIncludeValues(), request.getIncludeMetadata()));
+            List<Callable<QueryResponse>> tasks = new ArrayList<>(request.getQueriesCount());
+            for (BatchQuery query : request.getQueriesList()) {
+                float[] queryVector = query.hasPackedVector()
+                        ? PackedVectors.decode(query.getPackedVector())
+                        : toArray(query.getVectorList());
+                int topK = query.getTopK() > 0 ? query.getTopK() : DEFAULT_TOP_K;
+                MetadataFilter filter = query.hasFilter() ? toFilter(query.getFilter()) : null;
+                SearchParams params = toParams(query.getParams());
+                tasks.add(() -> toResponse(cache.search(index, queryVector, topK, filter, params), includeValues,
+                        includeMetadata, packing));
+            }
+            QueryBatchResponse.Builder builder = QueryBatchResponse.newBuilder();
+            for (Future<QueryResponse> result : searchExecutor.invokeAll(tasks)) {
+                builder.addResults(result.get());
             }
             responseObserver.onNext(builder.build());
             responseObserver.onCompleted();
+        } catch (ExecutionException ex) {
+            Status status = ex.getCause() instanceof IllegalArgumentException ? Status.INVALID_ARGUMENT : Status.INTERNAL;
+            responseObserver.onError(status.withDescription(ex.getCause().getMessage()).asRuntimeException());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            responseObserver.onError(Status.CANCELLED.withDescription("Interrupted").asRuntimeException());
         } catch (IllegalArgumentException ex) {
             responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(ex.getMessage()).asRuntimeException());
         } catch (Exception ex) {
@@ -87,31 +205,262 @@ public class VectorServiceImpl extends VectorServiceGrpc.VectorServiceImplBase {
         }
     }
 
-    private static VectorRecord toRecord(Vector vector) {
-        float[] values = toArray(vector.getValuesList());
+    @Override
+    public void delete(DeleteRequest request, StreamObserver<DeleteResponse> responseObserver) {
+        String namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
+        if (registry.get(namespace) == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
+            return;
+        }
+
+        try {
+            int deleted = registry.delete(namespace, request.getIdsList());
+            responseObserver.onNext(DeleteResponse.newBuilder().setDeletedCount(deleted).build());
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void optimize(OptimizeRequest request, StreamObserver<OptimizeResponse> responseObserver) {
+        String namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
+        try {
+            long started = System.nanoTime();
+            VectorIndex index = registry.optimize(namespace);
+            if (index == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(OptimizeResponse.newBuilder()
+                    .setSize(index.size())
+                    .setDurationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                    .build());
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException());
+        }
+    }
+
+    @Override
+    public void subscribe(SubscribeRequest request, StreamObserver<ChangeEvent> responseObserver) {
+        if (changeFeed == null) {
+            responseObserver.onError(Status.UNIMPLEMENTED.withDescription("Change feed is disabled")
+                    .asRuntimeException());
+            return;
+        }
+        String namespace = request.getNamespace().isBlank() ? "default" : request.getNamespace();
+        if (registry.get(namespace) == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
+            return;
+        }
+        long after = request.getEpoch() == changeFeed.epoch() ? request.getAfterSequence() : -1;
+        new FeedSubscription(registry, changeFeed, namespace, after,
+                (ServerCallStreamObserver<ChangeEvent>) responseObserver).start();
+    }
+
+    @Override
+    public void stats(StatsRequest request, StreamObserver<StatsResponse> responseObserver) {
+        Map<String, Integer> sizes = new TreeMap<>(registry.describe());
+        if (!request.getNamespace().isBlank()) {
+            Integer size = sizes.get(request.getNamespace());
+            if (size == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Namespace not found").asRuntimeException());
+                return;
+            }
+            sizes = Map.of(request.getNamespace(), size);
+        }
+
+        try {
+            StatsResponse.Builder builder = StatsResponse.newBuilder();
+            for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+                VectorIndex index = registry.peek(entry.getKey());
+                builder.addNamespaces(index == null
+                        ? NamespaceStats.newBuilder()
+                                .setNamespace(entry.getKey())
+                                .setSize(entry.getValue())
+                                .setEvicted(true)
+                                .build()
+                        : toStats(entry.getKey(), entry.getValue(), index, registry.queryCache(entry.getKey()),
+                                replica == null ? null : replica.progress(entry.getKey()),
+                                request.getIncludeGraph()));
+            }
+            for (Map.Entry<String, RpcMetrics.Method> entry : rpcMetrics.methods().entrySet()) {
+                RpcMetrics.Method method = entry.getValue();
+                builder.addRpcs(RpcStats.newBuilder()
+                        .setMethod(entry.getKey())
+                        .setCalls(method.calls())
+                        .setErrors(method.errors())
+                        .setLatencyUs(toSummary(method.latency(), 1_000.0)));
+            }
+            EvictionMetrics eviction = registry.evictionMetrics();
+            builder.setMemory(MemoryStats.newBuilder()
+                    .setBudgetBytes(registry.memoryBudget())
+                    .setResidentBytes(registry.residentBytes())
+                    .setEvictedNamespaces(registry.evictedNamespaces().size())
+                    .setEvictionMs(toSummary(eviction.evictions(), 1_000_000.0))
+                    .setReloadMs(toSummary(eviction.reloads(), 1_000_000.0)));
+            responseObserver.onNext(builder.build());
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).asRuntimeException());
+        }
+    }
+
+    private static NamespaceStats toStats(String namespace, int size, VectorIndex index, QueryCache cache,
+                                          Replica.Progress replication, boolean includeGraph) {
+        IndexMetrics metrics = index.metrics();
+        NamespaceStats.Builder builder = NamespaceStats.newBuilder()
+                .setNamespace(namespace)
+                .setSize(size)
+                .setDimension(index.getDimension())
+                .setMemoryBytes(index.memoryBytes())
+                .setTombstones(index.tombstoneCount())
+                .setQuantized(index.isQuantized())
+                .setShards(index.shardCount())
+                .setSearchLatencyUs(toSummary(metrics.searchLatency(), 1_000.0))
+                .setDistanceComputations(toSummary(metrics.distanceComputations(), 1.0))
+                .setHops(toSummary(metrics.hops(), 1.0))
+                .setVisitedNodes(toSummary(metrics.visited(), 1.0))
+                .setUpsertLatencyUs(toSummary(metrics.upsertLatency(), 1_000.0))
+                .setLockWaitUs(toSummary(metrics.lockWait(), 1_000.0))
+                .setFilteredScans(metrics.scans())
+                .setExactSearches(metrics.exactSearches())
+                .setDeletes(metrics.deletes());
+        if (cache.enabled()) {
+            builder.setQueryCache(QueryCacheStats.newBuilder()
+                    .setHits(cache.hits())
+                    .setMisses(cache.misses())
+                    .setHitRate(cache.hitRate())
+                    .setEntries(cache.size())
+                    .setMemoryBytes(cache.memoryBytes())
+                    .setEvictions(cache.evictions()));
+        }
+        if (replication != null) {
+            builder.setReplication(ReplicationStats.newBuilder()
+                    .setConnected(replication.connected())
+                    .setAppliedSequence(replication.appliedSequence())
+                    .setHeadSequence(replication.headSequence())
+                    .setLagMs(replication.lagMillis()));
+        }
+        if (includeGraph) {
+            long[][] distribution = index.degreeDistribution();
+            for (int level = 0; level < distribution.length; level++) {
+                LevelDegrees.Builder degrees = LevelDegrees.newBuilder().setLevel(level);
+                long nodes = 0;
+                long edges = 0;
+                for (int degree = 0; degree < distribution[level].length; degree++) {
+                    nodes += distribution[level][degree];
+                    edges += distribution[level][degree] * degree;
+                    degrees.addDegreeCounts(distribution[level][degree]);
+                }
+                builder.addLevels(degrees.setNodes(nodes).setMeanDegree(nodes == 0 ? 0.0 : (double) edges / nodes));
+            }
+        }
+        return builder.build();
+    }
+
+    private static HistogramSummary toSummary(Histogram histogram, double divisor) {
+        Histogram.Summary summary = histogram.summary();
+        return HistogramSummary.newBuilder()
+                .setCount(summary.count())
+                .setMean(summary.mean() / divisor)
+                .setP50(summary.p50() / divisor)
+                .setP90(summary.p90() / divisor)
+                .setP99(summary.p99() / divisor)
+                .setMax(summary.max() / divisor)
+                .build();
+    }
+
+    private IndexOptions toOptions(NamespaceOptions options) {
+        IndexOptions defaultOptions = registry.defaultOptions();
+        QuantizationConfig defaults = defaultOptions.quantization();
+        QuantizationConfig.Mode mode = switch (options.getQuantization()) {
+            case QUANTIZATION_NONE -> QuantizationConfig.Mode.NONE;
+            case QUANTIZATION_INT8 -> QuantizationConfig.Mode.INT8;
+            case QUANTIZATION_PQ -> QuantizationConfig.Mode.PQ;
+            default -> defaults.mode();
+        };
+        int trainingSize = options.getQuantizationTrainingSize() > 0
+                ? options.getQuantizationTrainingSize()
+                : defaults.trainingSize();
+        int pqSubspaces = options.getPqSubspaces() > 0 ? options.getPqSubspaces() : defaults.pqSubspaces();
+        boolean keepFullVectors = defaults.keepFullVectors() && !options.getDiscardFullVectors();
+        int shards = options.getShards() > 0 ? options.getShards() : defaultOptions.shards();
+        return new IndexOptions(new QuantizationConfig(mode, trainingSize, pqSubspaces, keepFullVectors), shards);
+    }
+
+    private static MetadataFilter toFilter(Filter filter) {
+        return switch (filter.getExpressionCase()) {
+            case CONDITION -> new MetadataFilter.Match(
+                    filter.getCondition().getKey(), new HashSet<>(filter.getCondition().getValuesList()));
+            case ALL_OF -> new MetadataFilter.And(
+                    filter.getAllOf().getFiltersList().stream().map(VectorServiceImpl::toFilter).toList());
+            case ANY_OF -> new MetadataFilter.Or(
+                    filter.getAnyOf().getFiltersList().stream().map(VectorServiceImpl::toFilter).toList());
+            case EXPRESSION_NOT_SET -> throw new IllegalArgumentException("Filter expression must be set");
+        };
+    }
+
+    private static SearchParams toParams(vector_service.VectorServiceOuterClass.SearchParams params) {
+        return new SearchParams(params.getEf(), params.getMaxDistanceComputations(), params.getPatience(),
+                params.getExact());
+    }
+
+    static VectorRecord toRecord(Vector vector) {
+        float[] values = vector.hasPackedValues()
+                ? PackedVectors.decode(vector.getPackedValues())
+                : toArray(vector.getValuesList());
         Map<String, String> metadata = vector.getMetadataMap();
         return new VectorRecord(vector.getId(), values, metadata);
     }
 
+    /**
+     * Reads generated repeated-float fields through their primitive accessor so elements are not boxed.
+     */
     private static float[] toArray(List<Float> values) {
         float[] array = new float[values.size()];
-        for (int i = 0; i < values.size(); i++) {
-            array[i] = values.get(i);
+        if (values instanceof Internal.FloatList floats) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = floats.getFloat(i);
+            }
+        } else {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = values.get(i);
+            }
         }
         return array;
     }
 
-    private static Match toMatch(SearchResult result, boolean includeValues, boolean includeMetadata) {
+    /**
+     * @param packing encoding of {@code Match.packed_values}, or {@code null} to return repeated floats
+     */
+    private static QueryResponse toResponse(List<SearchResult> matches, boolean includeValues, boolean includeMetadata,
+                                            VectorEncoding packing) {
+        QueryResponse.Builder builder = QueryResponse.newBuilder();
+        for (SearchResult result : matches) {
+            builder.addMatches(toMatch(result, includeValues, includeMetadata, packing));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Values and metadata are only read from the index when the request includes them.
+     */
+    private static Match toMatch(SearchResult result, boolean includeValues, boolean includeMetadata,
+                                 VectorEncoding packing) {
         Match.Builder builder = Match.newBuilder()
-                .setId(result.record().id())
+                .setId(result.id())
                 .setScore(1.0 - result.distance());
-        if (includeValues) {
-            for (float value : result.record().values()) {
+        if (includeValues && packing != null) {
+            builder.setPackedValues(PackedVectors.encode(result.values(), packing));
+        } else if (includeValues) {
+            for (float value : result.values()) {
                 builder.addValues(value);
             }
         }
         if (includeMetadata) {
-            builder.putAllMetadata(result.record().metadata());
+            builder.putAllMetadata(result.metadata());
         }
         return builder.build();
     }
@@ -0,0 +1,64 @@
+package org.hnsw.hnsw;
+
+import static org.hnsw.hnsw.VectorStore.PAGE_MASK;
+import static org.hnsw.hnsw.VectorStore.PAGE_SHIFT;
+import static org.hnsw.hnsw.VectorStore.PAGE_SIZE;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+final class CodeStore {
+    private final int codeSize;
+    private volatile byte[][] pages = new byte[0][];
+
+    CodeStore(int codeSize) {
+        this.codeSize = codeSize;
+    }
+
+    int codeSize() {
+        return codeSize;
+    }
+
+    int capacity() {
+        return pages.length << PAGE_SHIFT;
+    }
+
+    long memoryBytes() {
+        return (long) capacity() * codeSize;
+    }
+
+    void ensureCapacity(int nodes) {
+        int required = (nodes + PAGE_MASK) >>> PAGE_SHIFT;
+        if (required <= pages.length) {
+            return;
+        }
+        byte[][] grown = Arrays.copyOf(pages, Math.max(required, pages.length * 2));
+        for (int i = pages.length; i < grown.length; i++) {
+            grown[i] = new byte[PAGE_SIZE * codeSize];
+        }
+        pages = grown;
+    }
+
+    void write(SnapshotOutput out, int count) throws IOException {
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            out.writeBytes(page(start), 0, Math.min(PAGE_SIZE, count - start) * codeSize);
+        }
+    }
+
+    void read(SnapshotInput in, int count) throws IOException {
+        ensureCapacity(count);
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            in.readBytes(page(start), 0, Math.min(PAGE_SIZE, count - start) * codeSize);
+        }
+    }
+
+    byte[] page(int node) {
+        return pages[node >>> PAGE_SHIFT];
+    }
+
+    int offset(int node) {
+        return (node & PAGE_MASK) * codeSize;
+    }
+}
@@ -0,0 +1,69 @@
+package org.hnsw.hnsw;
+
+import java.util.Arrays;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.quantization.VectorCodec;
+
+/**
+ * Read-only view that reconstructs vectors from their codes. Replaces the full-precision store once a codec
+ * is trained for a namespace that does not keep its original vectors.
+ */
+final class CodecVectorStore implements VectorStore {
+    private final int dimension;
+    private final VectorCodec codec;
+    private final CodeStore codes;
+
+    CodecVectorStore(int dimension, VectorCodec codec, CodeStore codes) {
+        this.dimension = dimension;
+        this.codec = codec;
+        this.codes = codes;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int capacity() {
+        return codes.capacity();
+    }
+
+    @Override
+    public void ensureCapacity(int nodes) {
+        codes.ensureCapacity(nodes);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return 0;
+    }
+
+    @Override
+    public void set(int node, float[] values) {
+    }
+
+    @Override
+    public float[] get(int node) {
+        float[] values = new float[dimension];
+        codec.decode(codes.page(node), codes.offset(node), values);
+        return values;
+    }
+
+    /**
+     * Compares codes rather than decoded values: an update whose vector quantizes to the stored code cannot
+     * change any distance and is treated as unchanged.
+     */
+    @Override
+    public boolean matches(int node, float[] values) {
+        byte[] encoded = new byte[codes.codeSize()];
+        codec.encode(values, encoded, 0);
+        int offset = codes.offset(node);
+        return Arrays.equals(codes.page(node), offset, offset + encoded.length, encoded, 0, encoded.length);
+    }
+
+    @Override
+    public double distance(DistanceFunction distanceFunction, float[] query, int node) {
+        return distanceFunction.distance(query, get(node), 0);
+    }
+}
@@ -0,0 +1,89 @@
+package org.hnsw.hnsw;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+final class HeapVectorStore implements VectorStore {
+    private final int dimension;
+    private volatile float[][] pages = new float[0][];
+
+    HeapVectorStore(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int capacity() {
+        return pages.length << PAGE_SHIFT;
+    }
+
+    @Override
+    public void ensureCapacity(int nodes) {
+        int required = (nodes + PAGE_MASK) >>> PAGE_SHIFT;
+        if (required <= pages.length) {
+            return;
+        }
+        float[][] grown = Arrays.copyOf(pages, Math.max(required, pages.length * 2));
+        for (int i = pages.length; i < grown.length; i++) {
+            grown[i] = new float[PAGE_SIZE * dimension];
+        }
+        pages = grown;
+    }
+
+    @Override
+    public void set(int node, float[] values) {
+        System.arraycopy(values, 0, page(node), offset(node), dimension);
+    }
+
+    @Override
+    public float[] get(int node) {
+        int offset = offset(node);
+        return Arrays.copyOfRange(page(node), offset, offset + dimension);
+    }
+
+    @Override
+    public double distance(DistanceFunction distanceFunction, float[] query, int node) {
+        return distanceFunction.distance(query, page(node), offset(node));
+    }
+
+    @Override
+    public void distances(DistanceFunction distanceFunction, float[] query, int node, int count, double[] out) {
+        distanceFunction.distances(query, page(node), offset(node), count, out);
+    }
+
+    @Override
+    public boolean matches(int node, float[] values) {
+        int offset = offset(node);
+        return Arrays.equals(page(node), offset, offset + dimension, values, 0, values.length);
+    }
+
+    @Override
+    public void write(SnapshotOutput out, int count) throws IOException {
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            out.writeFloats(page(start), 0, Math.min(PAGE_SIZE, count - start) * dimension);
+        }
+    }
+
+    @Override
+    public void read(SnapshotInput in, int count) throws IOException {
+        ensureCapacity(count);
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            in.readFloats(page(start), 0, Math.min(PAGE_SIZE, count - start) * dimension);
+        }
+    }
+
+    float[] page(int node) {
+        return pages[node >>> PAGE_SHIFT];
+    }
+
+    int offset(int node) {
+        return (node & PAGE_MASK) * dimension;
+    }
+}
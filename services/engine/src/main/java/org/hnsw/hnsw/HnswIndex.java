@@ -1,156 +1,1037 @@
 package org.hnsw.hnsw;
 
-import java.security.SecureRandom;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.Random;
-import java.util.Set;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
 import org.hnsw.VectorRecord;
 import org.hnsw.distance.DistanceFunction;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.filter.MetadataIndex;
+import org.hnsw.filter.MetadataStore;
+import org.hnsw.metrics.IndexMetrics;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.quantization.VectorCodec;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HNSW graph that supports concurrent upserts and lock-free searches.
+ *
+ * <p>Neighbor lists are chosen with the diversity heuristic of the HNSW paper and hold up to {@code m} links
+ * on upper layers and {@code 2 * m} on layer 0, where every node lives and most of the search happens.
+ *
+ * <p>Upserts of the same id are serialized through striped id locks, each neighbor list is guarded by a
+ * striped node lock, and the entry point is swapped atomically. Searches never block: they read neighbor
+ * lists with acquire semantics while inserts are in flight. Storage growth is the only exclusive
+ * operation and only blocks other writers.
+ *
+ * <p>With quantization enabled, full-precision vectors move off-heap and, once enough vectors have been
+ * upserted to train the codec, traversal scores compact codes and only the final {@code efSearch}
+ * candidates are reranked against the original floats. Namespaces that do not keep full vectors drop
+ * them after training and serve the code distances directly.
+ *
+ * <p>Deletes and vector updates only tombstone the old node: it stays in the graph for navigation but is never
+ * returned. {@link #compact()} later reconnects the neighbors of tombstoned nodes and recycles their ordinals.
+ *
+ * <p>Small indexes, and queries that ask for exact results, skip the graph and score every live vector; the
+ * graph is built all along, so the switch to traversal once the index outgrows about a megabyte of vectors is
+ * free.
+ *
+ * <p>Metadata is kept apart from the graph in a columnar {@link MetadataStore} and indexed into per-value
+ * bitmaps; search results only read it back when asked to. Filtered searches traverse the graph but only admit
+ * matching nodes into the result set, or scan the matching nodes directly when the filter is too selective for
+ * the traversal to find enough of them cheaply.
+ */
+public final class HnswIndex implements VectorIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HnswIndex.class);
+    private static final int ID_LOCK_STRIPES = 256;
+    private static final int NODE_LOCK_STRIPES = 1024;
+    private static final int SNAPSHOT_VERSION = 3;
+    /**
+     * While the live vectors hold fewer floats than this (1 MiB), a blocked scan of all of them is about as fast
+     * as a graph traversal and exact, so searches skip the graph: roughly 4k vectors at 64 dimensions, 2k at 128.
+     */
+    private static final long FLAT_SEARCH_FLOATS = 1L << 18;
+    private static final int SCAN_BLOCK = 64;
 
-public final class HnswIndex {
     private final int dimension;
     private final int m;
+    private final double levelMultiplier;
     private final int efConstruction;
     private final int efSearch;
     private final DistanceFunction distanceFunction;
+    private final QuantizationConfig quantization;
+    private final VectorCodec codec;
+    private final CodeStore codes;
+    private final int trainingSize;
+    private final boolean rerank;
+
+    private final ConcurrentMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile VectorStore vectors;
+    private final NeighborGraph graph;
+    private final VisitedListPool visitedLists = new VisitedListPool();
+    private final MetadataIndex metadataIndex = new MetadataIndex();
+    private final MetadataStore metadata = new MetadataStore();
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+    private final Queue<Integer> tombstones = new ConcurrentLinkedQueue<>();
+    private final Queue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tombstoneCount = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+    private volatile String[] ids = new String[0];
+
+    private final ReentrantLock[] idLocks = newLocks(ID_LOCK_STRIPES);
+    private final ReentrantLock[] nodeLocks = newLocks(NODE_LOCK_STRIPES);
+    private final ReentrantLock entryLock = new ReentrantLock();
+    private final ReadWriteLock growthLock = new ReentrantReadWriteLock();
 
-    private final ConcurrentMap<String, HnswNode> nodes = new ConcurrentHashMap<>();
-    private final Random levelRandom = new SecureRandom();
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final IndexMetrics metrics;
 
-    private volatile HnswNode entryPoint;
-    private volatile int maxLevel = 0;
+    private volatile EntryPoint entryPoint;
+    private volatile boolean quantized;
+    private long flatSearchFloats = FLAT_SEARCH_FLOATS;
 
     public HnswIndex(int dimension, int m, int efConstruction, int efSearch, DistanceFunction distanceFunction) {
+        this(dimension, m, efConstruction, efSearch, distanceFunction, QuantizationConfig.none());
+    }
+
+    public HnswIndex(int dimension, int m, int efConstruction, int efSearch, DistanceFunction distanceFunction,
+                     QuantizationConfig quantization) {
+        this(dimension, m, efConstruction, efSearch, distanceFunction, quantization, new IndexMetrics());
+    }
+
+    /**
+     * Creates an index that reports to the given metrics, so the shards of a {@link ShardedIndex} share one set.
+     */
+    HnswIndex(int dimension, int m, int efConstruction, int efSearch, DistanceFunction distanceFunction,
+              QuantizationConfig quantization, IndexMetrics metrics) {
+        this(dimension, m, 2 * m, efConstruction, efSearch, distanceFunction, quantization, metrics, null);
+    }
+
+    /**
+     * @param trained a trained codec to share with another index, or {@code null} to create one if quantization
+     *                is enabled
+     */
+    private HnswIndex(int dimension, int m, int maxM0, int efConstruction, int efSearch,
+                      DistanceFunction distanceFunction, QuantizationConfig quantization, IndexMetrics metrics,
+                      VectorCodec trained) {
         this.dimension = dimension;
         this.m = m;
+        this.levelMultiplier = m > 1 ? 1.0 / Math.log(m) : 1.0;
         this.efConstruction = efConstruction;
         this.efSearch = efSearch;
         this.distanceFunction = distanceFunction;
+        this.quantization = quantization;
+        this.metrics = metrics;
+        this.graph = new NeighborGraph(m, maxM0);
+        if (quantization.enabled()) {
+            this.codec = trained != null ? trained : quantization.createCodec(dimension, distanceFunction.metric());
+            this.codes = new CodeStore(codec.codeSize());
+            this.trainingSize = quantization.trainingSize();
+            this.rerank = quantization.keepFullVectors();
+            this.vectors = new OffHeapVectorStore(dimension);
+        } else {
+            this.codec = null;
+            this.codes = null;
+            this.trainingSize = 0;
+            this.rerank = false;
+            this.vectors = new HeapVectorStore(dimension);
+        }
+    }
+
+    /**
+     * Overrides the size below which searches scan instead of traversing the graph, so tests can exercise the
+     * traversal on small indexes. Must be called before the index is shared.
+     */
+    void setFlatSearchFloats(long floats) {
+        this.flatSearchFloats = floats;
     }
 
+    @Override
     public int getDimension() {
         return dimension;
     }
 
+    @Override
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    @Override
+    public IndexMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
     public void upsert(VectorRecord record) {
         if (record.values().length != dimension) {
             throw new IllegalArgumentException("Vector dimension mismatch: expected " + dimension + " got " + record.values().length);
         }
 
-        lock.writeLock().lock();
+        long started = System.nanoTime();
+        float[] values = distanceFunction.prepare(record.values());
+        ReentrantLock idLock = idLock(record.id());
+        idLock.lock();
+        long lockWait = System.nanoTime() - started;
         try {
-            HnswNode existing = nodes.get(record.id());
-            if (existing != null) {
-                remove(existing);
+            Integer existing = ordinals.get(record.id());
+            if (existing != null && vectors.matches(existing, values)) {
+                long waiting = System.nanoTime();
+                growthLock.readLock().lock();
+                lockWait += System.nanoTime() - waiting;
+                try {
+                    metadataIndex.remove(existing, metadata.get(existing));
+                    metadata.set(existing, record.metadata());
+                    metadataIndex.add(existing, record.metadata());
+                } finally {
+                    growthLock.readLock().unlock();
+                }
+                metrics.recordUpsert(System.nanoTime() - started, lockWait);
+                return;
             }
-            insert(record);
+            int node = allocate();
+            long waiting = System.nanoTime();
+            growthLock.readLock().lock();
+            lockWait += System.nanoTime() - waiting;
+            try {
+                boolean useCodes = quantized;
+                ids[node] = record.id();
+                metadata.set(node, record.metadata());
+                metadataIndex.add(node, record.metadata());
+                vectors.set(node, values);
+                if (useCodes) {
+                    codec.encode(values, codes.page(node), codes.offset(node));
+                }
+                // Publish the new node before retiring the old one, so lazy results of the id always find one.
+                ordinals.put(record.id(), node);
+                if (existing != null) {
+                    tombstone(existing);
+                }
+                insert(node, scorer(values, useCodes));
+            } finally {
+                growthLock.readLock().unlock();
+            }
+        } finally {
+            version.incrementAndGet();
+            idLock.unlock();
+        }
+        maybeTrain();
+        metrics.recordUpsert(System.nanoTime() - started, lockWait);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        ReentrantLock idLock = idLock(id);
+        idLock.lock();
+        try {
+            Integer node = ordinals.remove(id);
+            if (node == null) {
+                return false;
+            }
+            growthLock.readLock().lock();
+            try {
+                tombstone(node);
+            } finally {
+                growthLock.readLock().unlock();
+            }
+            version.incrementAndGet();
+            metrics.recordDelete();
+            return true;
         } finally {
-            lock.writeLock().unlock();
+            idLock.unlock();
         }
     }
 
+    @Override
+    public double tombstoneRatio() {
+        int dead = tombstoneCount.get();
+        return dead == 0 ? 0.0 : (double) dead / (dead + ordinals.size());
+    }
+
+    @Override
     public int size() {
-        return nodes.size();
+        return ordinals.size();
+    }
+
+    @Override
+    public int tombstoneCount() {
+        return tombstoneCount.get();
+    }
+
+    @Override
+    public int shardCount() {
+        return 1;
+    }
+
+    @Override
+    public long version() {
+        return version.get();
     }
 
-    public List<SearchResult> search(float[] query, int topK) {
+    /**
+     * Approximate bytes held by vectors, codes, adjacency lists and stored metadata, on and off heap. Ids and the
+     * metadata filter index are not counted.
+     */
+    @Override
+    public long memoryBytes() {
+        return vectors.memoryBytes() + graph.memoryBytes() + (codes == null ? 0 : codes.memoryBytes())
+                + metadata.memoryBytes();
+    }
+
+    /**
+     * Degree histogram of live nodes per layer: {@code result[layer][degree]} is the number of nodes on that
+     * layer with that many neighbors. Walks the whole graph, so it is meant for diagnostics only.
+     */
+    @Override
+    public long[][] degreeDistribution() {
+        String[] assigned = ids;
+        int count = Math.min(nextOrdinal.get(), assigned.length);
+        List<long[]> layers = new ArrayList<>();
+        for (int node = 0; node < count; node++) {
+            if (assigned[node] == null) {
+                continue;
+            }
+            int level = graph.level(node);
+            for (int layer = 0; layer <= level; layer++) {
+                if (layer == layers.size()) {
+                    layers.add(new long[graph.maxDegree(layer) + 1]);
+                }
+                long[] histogram = layers.get(layer);
+                histogram[Math.min(graph.degree(node, layer), histogram.length - 1)]++;
+            }
+        }
+        return layers.toArray(new long[0][]);
+    }
+
+    /**
+     * Describes every broken graph invariant: a list over its layer's maximum degree, a link to a recycled or
+     * unallocated slot, or an id whose ordinal and slot disagree. Blocks writers while it walks the graph; meant
+     * for tests.
+     */
+    List<String> violations() {
+        growthLock.writeLock().lock();
+        try {
+            List<String> violations = new ArrayList<>();
+            String[] assigned = ids;
+            int count = Math.min(nextOrdinal.get(), assigned.length);
+            BitSet free = new BitSet(count);
+            for (int node : freeSlots) {
+                free.set(node);
+            }
+            int[] scratch = new int[graph.maxDegree(0)];
+            for (int node = 0; node < count; node++) {
+                if (assigned[node] == null) {
+                    continue;
+                }
+                if (!Integer.valueOf(node).equals(ordinals.get(assigned[node]))) {
+                    violations.add("node " + node + " holds '" + assigned[node] + "', mapped to "
+                            + ordinals.get(assigned[node]));
+                }
+                for (int layer = 0; layer <= graph.level(node); layer++) {
+                    int degree = graph.degree(node, layer);
+                    if (degree > graph.maxDegree(layer)) {
+                        violations.add("node " + node + " has " + degree + " neighbors on layer " + layer);
+                        continue;
+                    }
+                    degree = graph.copyNeighbors(node, layer, scratch);
+                    for (int i = 0; i < degree; i++) {
+                        int neighbor = scratch[i];
+                        if (neighbor < 0 || neighbor >= count || free.get(neighbor)) {
+                            violations.add("node " + node + " links to free slot " + neighbor + " on layer " + layer);
+                        }
+                    }
+                }
+            }
+            ordinals.forEach((id, node) -> {
+                if (node >= count || !id.equals(assigned[node])) {
+                    violations.add("'" + id + "' is mapped to node " + node + ", which holds " + (node < count
+                            ? assigned[node] : "nothing"));
+                }
+            });
+            EntryPoint entry = entryPoint;
+            if (entry != null && (entry.node() >= count || free.get(entry.node()))) {
+                violations.add("entry point " + entry.node() + " is a free slot");
+            }
+            return violations;
+        } finally {
+            growthLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(float[] query, int topK, MetadataFilter filter, SearchParams params) {
         if (query.length != dimension) {
             throw new IllegalArgumentException("Query dimension mismatch: expected " + dimension + " got " + query.length);
         }
+        if (params.exact() && codec != null && !rerank) {
+            throw new IllegalArgumentException(
+                    "Exact search needs full-precision vectors, which this quantized index does not keep");
+        }
 
-        lock.readLock().lock();
-        try {
-            if (entryPoint == null) {
+        EntryPoint entry = entryPoint;
+        if (entry == null) {
+            return List.of();
+        }
+
+        long started = System.nanoTime();
+        Traversal traversal = new Traversal();
+        float[] target = distanceFunction.prepare(query);
+        boolean flat = params.exact() || (long) size() * dimension < flatSearchFloats;
+        boolean useCodes = quantized && !flat;
+        NodeScorer scorer = scorer(target, useCodes);
+        IntPredicate accept = node -> idAt(node) != null;
+        int ef = Math.max(params.ef() > 0 ? params.ef() : efSearch, topK);
+        int budget = params.maxDistanceComputations();
+        int patience = params.patience();
+        Collection<SearchEntry> best;
+        boolean scanned = false;
+        if (flat) {
+            best = filter == null
+                    ? scanAll(target, topK, traversal)
+                    : scan(scorer, metadataIndex.evaluate(filter), topK, traversal);
+        } else if (filter == null) {
+            SearchEntry closest = greedyClosest(scorer, entry, 0, -1, traversal);
+            best = searchLayer(scorer, closest, 0, ef, accept, budget, patience, traversal);
+        } else {
+            RoaringBitmap allowed = metadataIndex.evaluate(filter);
+            int matches = allowed.getCardinality();
+            if (matches == 0) {
+                metrics.recordSearch(System.nanoTime() - started, 0, 0, 0, true, false);
                 return List.of();
             }
+            if ((long) matches * matches <= (long) ef * m * size()) {
+                best = scan(scorer, allowed, ef, traversal);
+                scanned = true;
+            } else {
+                SearchEntry closest = greedyClosest(scorer, entry, 0, -1, traversal);
+                best = searchLayer(scorer, closest, 0, ef, accept.and(allowed::contains), budget, patience, traversal);
+            }
+        }
+
+        List<SearchEntry> ordered = new ArrayList<>(best.size());
+        VectorStore exact = vectors;
+        for (SearchEntry candidate : best) {
+            ordered.add(useCodes && rerank
+                    ? new SearchEntry(candidate.node, exact.distance(distanceFunction, target, candidate.node))
+                    : candidate);
+        }
+        ordered.sort(Comparator.comparingDouble(a -> a.distance));
+        List<SearchResult> results = new ArrayList<>(Math.min(topK, ordered.size()));
+        for (SearchEntry resultEntry : ordered) {
+            String id = idAt(resultEntry.node);
+            if (id == null) {
+                continue;
+            }
+            results.add(new SearchResult(this, resultEntry.node, id, resultEntry.distance));
+            if (results.size() == topK) {
+                break;
+            }
+        }
+        metrics.recordSearch(System.nanoTime() - started, traversal.computations, traversal.hops, traversal.visited,
+                scanned, flat);
+        return results;
+    }
+
+    /**
+     * Scores every live node in page-aligned blocks, so heap-resident vectors go through the blocked distance
+     * kernel instead of one call per node.
+     */
+    private PriorityQueue<SearchEntry> scanAll(float[] target, int limit, Traversal traversal) {
+        PriorityQueue<SearchEntry> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+        VectorStore store = vectors;
+        String[] assigned = ids;
+        int count = Math.min(Math.min(nextOrdinal.get(), assigned.length), store.capacity());
+        double[] distances = new double[SCAN_BLOCK];
+        for (int start = 0; start < count; ) {
+            int block = Math.min(Math.min(SCAN_BLOCK, count - start),
+                    VectorStore.PAGE_SIZE - (start & VectorStore.PAGE_MASK));
+            store.distances(distanceFunction, target, start, block, distances);
+            traversal.computations += block;
+            traversal.visited += block;
+            for (int i = 0; i < block; i++) {
+                int node = start + i;
+                if (assigned[node] == null) {
+                    continue;
+                }
+                if (best.size() < limit) {
+                    best.add(new SearchEntry(node, distances[i]));
+                } else if (distances[i] < best.peek().distance) {
+                    best.poll();
+                    best.add(new SearchEntry(node, distances[i]));
+                }
+            }
+            start += block;
+        }
+        return best;
+    }
+
+    /**
+     * Scores every node in {@code allowed} directly. A filtered traversal has to expand roughly
+     * {@code ef * size / matches} nodes to collect {@code ef} matches, so below about
+     * {@code sqrt(ef * m * size)} matches the scan is cheaper and also immune to the filter disconnecting the
+     * graph.
+     */
+    private PriorityQueue<SearchEntry> scan(NodeScorer scorer, RoaringBitmap allowed, int limit, Traversal traversal) {
+        PriorityQueue<SearchEntry> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+        PeekableIntIterator nodes = allowed.getIntIterator();
+        while (nodes.hasNext()) {
+            int node = nodes.next();
+            if (idAt(node) == null) {
+                continue;
+            }
+            double dist = scorer.distance(node);
+            traversal.computations++;
+            traversal.visited++;
+            if (best.size() < limit) {
+                best.add(new SearchEntry(node, dist));
+            } else if (dist < best.peek().distance) {
+                best.poll();
+                best.add(new SearchEntry(node, dist));
+            }
+        }
+        return best;
+    }
 
-            HnswNode curr = entryPoint;
-            double currDist = distanceFunction.distance(query, curr.record.values());
-            for (int level = maxLevel; level > 0; level--) {
-                boolean changed;
-                do {
-                    changed = false;
-                    for (HnswNode neighbor : curr.neighborsAt(level)) {
-                        double dist = distanceFunction.distance(query, neighbor.record.values());
-                        if (dist < currDist) {
-                            currDist = dist;
-                            curr = neighbor;
-                            changed = true;
+    /**
+     * Reconnects live neighbors of tombstoned nodes and recycles the tombstoned ordinals. Upserts and deletes
+     * wait for the duration; searches keep running and at worst visit a recycled node once.
+     *
+     * @return the number of reclaimed nodes
+     */
+    @Override
+    public int compact() {
+        growthLock.writeLock().lock();
+        try {
+            BitSet dead = new BitSet(nextOrdinal.get());
+            for (Integer node; (node = tombstones.poll()) != null; ) {
+                dead.set(node);
+            }
+            int reclaimed = dead.cardinality();
+            if (reclaimed == 0) {
+                return 0;
+            }
+            String[] assigned = ids;
+            int count = Math.min(nextOrdinal.get(), assigned.length);
+            int[] scratch = new int[graph.maxDegree(0)];
+            int top = -1;
+            int topLevel = -1;
+            for (int node = 0; node < count; node++) {
+                if (assigned[node] == null) {
+                    continue;
+                }
+                int level = graph.level(node);
+                if (level > topLevel) {
+                    top = node;
+                    topLevel = level;
+                }
+                for (int layer = 0; layer <= level; layer++) {
+                    int degree = graph.copyNeighbors(node, layer, scratch);
+                    for (int i = 0; i < degree; i++) {
+                        if (dead.get(scratch[i])) {
+                            repair(node, layer, dead);
+                            break;
                         }
                     }
-                } while (changed);
+                }
             }
 
-            PriorityQueue<SearchEntry> candidates = new PriorityQueue<>(Comparator.comparingDouble(a -> a.distance));
-            PriorityQueue<SearchEntry> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
-            Set<String> visited = new HashSet<>();
+            EntryPoint entry = entryPoint;
+            if (entry != null && dead.get(entry.node())) {
+                entryPoint = top < 0 ? null : new EntryPoint(top, topLevel);
+            }
+            for (int node = dead.nextSetBit(0); node >= 0; node = dead.nextSetBit(node + 1)) {
+                graph.reset(node, 0);
+                freeSlots.add(node);
+            }
+            tombstoneCount.addAndGet(-reclaimed);
+            metadata.reclaim();
+            return reclaimed;
+        } finally {
+            growthLock.writeLock().unlock();
+        }
+    }
 
-            SearchEntry entry = new SearchEntry(curr, currDist);
-            candidates.add(entry);
-            best.add(entry);
-            visited.add(curr.record.id());
+    /**
+     * Replaces {@code node}'s list at {@code layer} with a diverse selection of live nodes among its current
+     * neighbors and the neighbors of its tombstoned neighbors (the paper's extended candidate set). Pruned
+     * candidates fill any remaining slots so repaired nodes keep their degree.
+     */
+    private void repair(int node, int layer, BitSet dead) {
+        int maxDegree = graph.maxDegree(layer);
+        int[] neighbors = new int[maxDegree];
+        int[] hop = new int[Math.max(graph.maxDegree(0), maxDegree)];
+        int degree = graph.copyNeighbors(node, layer, neighbors);
+        BitSet seen = new BitSet();
+        seen.set(node);
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < degree; i++) {
+            int neighbor = neighbors[i];
+            if (!dead.get(neighbor)) {
+                if (!seen.get(neighbor)) {
+                    seen.set(neighbor);
+                    candidates.add(neighbor);
+                }
+                continue;
+            }
+            int hops = graph.copyNeighbors(neighbor, layer, hop);
+            for (int h = 0; h < hops; h++) {
+                int candidate = hop[h];
+                if (!dead.get(candidate) && !seen.get(candidate) && ids[candidate] != null) {
+                    seen.set(candidate);
+                    candidates.add(candidate);
+                }
+            }
+        }
 
-            while (!candidates.isEmpty()) {
-                SearchEntry candidate = candidates.poll();
-                SearchEntry worstBest = best.peek();
-                if (worstBest != null && candidate.distance > worstBest.distance) {
-                    break;
+        VectorStore store = vectors;
+        float[] base = store.get(node);
+        List<SearchEntry> ranked = new ArrayList<>(candidates.size());
+        for (int candidate : candidates) {
+            ranked.add(new SearchEntry(candidate, store.distance(distanceFunction, base, candidate)));
+        }
+        ranked.sort(Comparator.comparingDouble(a -> a.distance));
+        int size = selectNeighbors(ranked, maxDegree, true, neighbors);
+        ReentrantLock lock = nodeLock(node);
+        lock.lock();
+        try {
+            graph.setNeighbors(node, layer, neighbors, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compacts the index and copies it with the live nodes renumbered in {@link #localityOrder locality order},
+     * so that a traversal touches far fewer pages of vectors, codes and adjacency lists. The copy shares this
+     * index's metrics and trained codec. Callers must keep upserts to this index paused; searches may continue.
+     */
+    @Override
+    public HnswIndex reordered() {
+        growthLock.writeLock().lock();
+        try {
+            compact();
+            String[] assigned = ids;
+            int count = Math.min(nextOrdinal.get(), assigned.length);
+            int[] order = localityOrder(assigned, count);
+            int[] remap = new int[count];
+            Arrays.fill(remap, -1);
+            for (int node = 0; node < order.length; node++) {
+                remap[order[node]] = node;
+            }
+
+            boolean hasCodes = quantized;
+            boolean hasVectors = !hasCodes || rerank;
+            HnswIndex copy = new HnswIndex(dimension, m, graph.maxDegree(0), efConstruction, efSearch,
+                    distanceFunction, quantization, metrics, hasCodes ? codec : null);
+            if (order.length > 0) {
+                copy.allocate(order.length);
+            }
+            int[] neighbors = new int[graph.maxDegree(0)];
+            for (int node = 0; node < order.length; node++) {
+                int old = order[node];
+                copy.ids[node] = assigned[old];
+                copy.ordinals.put(assigned[old], node);
+                Map<String, String> values = metadata.get(old);
+                copy.metadata.set(node, values);
+                copy.metadataIndex.add(node, values);
+                if (hasVectors) {
+                    copy.vectors.set(node, vectors.get(old));
                 }
-                for (HnswNode neighbor : candidate.node.neighborsAt(0)) {
-                    if (!visited.add(neighbor.record.id())) {
-                        continue;
-                    }
-                    double dist = distanceFunction.distance(query, neighbor.record.values());
-                    SearchEntry neighborEntry = new SearchEntry(neighbor, dist);
-                    if (best.size() < efSearch || dist < best.peek().distance) {
-                        candidates.add(neighborEntry);
-                        best.add(neighborEntry);
-                        if (best.size() > efSearch) {
-                            best.poll();
+                if (hasCodes) {
+                    System.arraycopy(codes.page(old), codes.offset(old), copy.codes.page(node), copy.codes.offset(node),
+                            codes.codeSize());
+                }
+                int level = graph.level(old);
+                copy.graph.reset(node, level);
+                for (int layer = 0; layer <= level; layer++) {
+                    int degree = graph.copyNeighbors(old, layer, neighbors);
+                    int kept = 0;
+                    for (int i = 0; i < degree; i++) {
+                        if (remap[neighbors[i]] >= 0) {
+                            neighbors[kept++] = remap[neighbors[i]];
                         }
                     }
+                    copy.graph.setNeighbors(node, layer, neighbors, kept);
+                }
+            }
+            if (hasCodes) {
+                if (!rerank) {
+                    copy.vectors = new CodecVectorStore(dimension, codec, copy.codes);
+                }
+                copy.training.set(true);
+                copy.quantized = true;
+            }
+            EntryPoint entry = entryPoint;
+            copy.entryPoint = entry == null || remap[entry.node()] < 0
+                    ? null : new EntryPoint(remap[entry.node()], entry.level());
+            return copy;
+        } finally {
+            growthLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reverse Cuthill-McKee order of the live nodes over layer 0: a breadth-first walk from the entry point that
+     * queues lower-degree neighbors first, reversed. Graph neighbors end up with nearby ordinals. Components the
+     * walk does not reach are walked in turn from their lowest ordinal.
+     */
+    private int[] localityOrder(String[] assigned, int count) {
+        int live = 0;
+        for (int node = 0; node < count; node++) {
+            if (assigned[node] != null) {
+                live++;
+            }
+        }
+        int[] order = new int[live];
+        BitSet queued = new BitSet(count);
+        int[] neighbors = new int[graph.maxDegree(0)];
+        int[] degrees = new int[neighbors.length];
+        EntryPoint entry = entryPoint;
+        int tail = 0;
+        int next = 0;
+        for (int head = 0; head < live; head++) {
+            if (head == tail) {
+                while (assigned[next] == null || queued.get(next)) {
+                    next++;
+                }
+                int seed = head == 0 && entry != null && assigned[entry.node()] != null ? entry.node() : next;
+                queued.set(seed);
+                order[tail++] = seed;
+            }
+            int degree = graph.copyNeighbors(order[head], 0, neighbors);
+            for (int i = 0; i < degree; i++) {
+                int neighbor = neighbors[i];
+                int neighborDegree = graph.degree(neighbor, 0);
+                int j = i;
+                for (; j > 0 && degrees[j - 1] > neighborDegree; j--) {
+                    neighbors[j] = neighbors[j - 1];
+                    degrees[j] = degrees[j - 1];
+                }
+                neighbors[j] = neighbor;
+                degrees[j] = neighborDegree;
+            }
+            for (int i = 0; i < degree; i++) {
+                int neighbor = neighbors[i];
+                if (assigned[neighbor] != null && !queued.get(neighbor)) {
+                    queued.set(neighbor);
+                    order[tail++] = neighbor;
+                }
+            }
+        }
+        for (int i = 0, j = live - 1; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Writes the whole index in a layout {@link #readSnapshot} can bulk-load from a memory-mapped file. Callers
+     * must keep upserts to this index paused; searches may continue.
+     */
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        growthLock.writeLock().lock();
+        try {
+            int count = nextOrdinal.get();
+            boolean hasCodes = quantized;
+            boolean hasVectors = !hasCodes || rerank;
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(dimension);
+            out.writeInt(m);
+            out.writeInt(graph.maxDegree(0));
+            out.writeInt(efConstruction);
+            out.writeInt(efSearch);
+            out.writeByte(distanceFunction.metric().ordinal());
+            out.writeByte(quantization.mode().ordinal());
+            out.writeInt(quantization.trainingSize());
+            out.writeInt(quantization.pqSubspaces());
+            out.writeBoolean(quantization.keepFullVectors());
+            out.writeBoolean(hasCodes);
+            out.writeInt(count);
+            EntryPoint entry = entryPoint;
+            out.writeInt(entry == null ? -1 : entry.node());
+            out.writeInt(entry == null ? 0 : entry.level());
+
+            String[] assigned = ids;
+            for (int node = 0; node < count; node++) {
+                out.writeString(assigned[node]);
+                Map<String, String> values = metadata.get(node);
+                out.writeInt(values.size());
+                for (Map.Entry<String, String> attribute : values.entrySet()) {
+                    out.writeString(attribute.getKey());
+                    out.writeString(attribute.getValue());
+                }
+            }
+            if (hasVectors) {
+                vectors.write(out, count);
+            }
+            graph.write(out, count);
+            if (hasCodes) {
+                codec.write(out);
+                codes.write(out, count);
+            }
+            List<Integer> free = List.copyOf(freeSlots);
+            out.writeInt(free.size());
+            for (int node : free) {
+                out.writeInt(node);
+            }
+        } finally {
+            growthLock.writeLock().unlock();
+        }
+    }
+
+    public static HnswIndex readSnapshot(SnapshotInput in, DistanceFunction distanceFunction) throws IOException {
+        return readSnapshot(in, in.readInt(), distanceFunction, new IndexMetrics());
+    }
+
+    /**
+     * Reads the rest of a snapshot whose leading version has already been consumed.
+     */
+    static HnswIndex readSnapshot(SnapshotInput in, int version, DistanceFunction distanceFunction,
+                                  IndexMetrics metrics) throws IOException {
+        if (version < 1 || version > SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int dimension = in.readInt();
+        int m = in.readInt();
+        int maxM0 = version == 1 ? m : in.readInt();
+        int efConstruction = in.readInt();
+        int efSearch = in.readInt();
+        DistanceMetric metric = DistanceMetric.values()[in.readByte()];
+        if (metric != distanceFunction.metric()) {
+            throw new IOException("Snapshot was built with " + metric + " distance but engine uses " + distanceFunction.metric());
+        }
+        QuantizationConfig quantization = new QuantizationConfig(
+                QuantizationConfig.Mode.values()[in.readByte()], in.readInt(), in.readInt(), in.readBoolean());
+        boolean hasCodes = in.readBoolean();
+        int count = in.readInt();
+        int entryNode = in.readInt();
+        int entryLevel = in.readInt();
+
+        HnswIndex index = new HnswIndex(dimension, m, maxM0, efConstruction, efSearch, distanceFunction, quantization,
+                metrics, null);
+        if (count > 0) {
+            index.allocate(count);
+        }
+        BitSet empty = new BitSet(count);
+        for (int node = 0; node < count; node++) {
+            String id = in.readString();
+            int attributes = in.readInt();
+            Map<String, String> values = attributes == 0 ? Map.of() : new HashMap<>(attributes * 2);
+            for (int i = 0; i < attributes; i++) {
+                values.put(in.readString(), in.readString());
+            }
+            if (id != null) {
+                index.ids[node] = id;
+                index.metadata.set(node, values);
+                index.ordinals.put(id, node);
+                index.metadataIndex.add(node, values);
+            } else {
+                empty.set(node);
+            }
+        }
+        if (!hasCodes || index.rerank) {
+            index.vectors.read(in, count);
+        }
+        index.graph.read(in, count);
+        if (hasCodes) {
+            index.codec.read(in);
+            index.codes.read(in, count);
+            if (!index.rerank) {
+                index.vectors = new CodecVectorStore(dimension, index.codec, index.codes);
+            }
+            index.training.set(true);
+            index.quantized = true;
+        }
+        // Slots compact() already recycled go back to the free list; older snapshots did not record them, so
+        // there every empty slot is taken for a tombstone and the next compaction recycles it again.
+        if (version >= 3) {
+            for (int i = in.readInt(); i > 0; i--) {
+                int node = in.readInt();
+                empty.clear(node);
+                index.freeSlots.add(node);
+            }
+        }
+        for (int node = empty.nextSetBit(0); node >= 0; node = empty.nextSetBit(node + 1)) {
+            index.tombstone(node);
+        }
+        index.entryPoint = entryNode < 0 ? null : new EntryPoint(entryNode, entryLevel);
+        return index;
+    }
+
+    private int allocate() {
+        Integer free = freeSlots.poll();
+        return free != null ? free : allocate(1);
+    }
+
+    private int allocate(int nodes) {
+        int node = nextOrdinal.getAndAdd(nodes);
+        int required = node + nodes;
+        if (required > ids.length) {
+            growthLock.writeLock().lock();
+            try {
+                if (required > ids.length) {
+                    vectors.ensureCapacity(required);
+                    graph.ensureCapacity(required);
+                    if (codes != null) {
+                        codes.ensureCapacity(required);
+                    }
+                    ids = Arrays.copyOf(ids, graph.capacity());
                 }
+            } finally {
+                growthLock.writeLock().unlock();
             }
+        }
+        return node;
+    }
 
-            List<SearchEntry> ordered = new ArrayList<>(best);
-            ordered.sort(Comparator.comparingDouble(a -> a.distance));
-            return ordered.stream()
-                    .limit(topK)
-                    .map(resultEntry -> new SearchResult(resultEntry.node.record, resultEntry.distance))
-                    .toList();
+    private void maybeTrain() {
+        if (codec == null || quantized || nextOrdinal.get() < trainingSize || !training.compareAndSet(false, true)) {
+            return;
+        }
+        List<float[]> sample;
+        growthLock.readLock().lock();
+        try {
+            String[] assigned = ids;
+            int count = Math.min(nextOrdinal.get(), assigned.length);
+            sample = new ArrayList<>(Math.min(count, trainingSize));
+            for (int node = 0; node < count && sample.size() < trainingSize; node++) {
+                if (assigned[node] != null) {
+                    sample.add(vectors.get(node));
+                }
+            }
         } finally {
-            lock.readLock().unlock();
+            growthLock.readLock().unlock();
         }
+        // Nothing reads the codec before it is installed, so writers and searches carry on while it trains; only
+        // encoding what was written in the meantime and switching over stop the writers.
+        codec.train(sample);
+        growthLock.writeLock().lock();
+        int count;
+        try {
+            count = Math.min(nextOrdinal.get(), ids.length);
+            for (int node = 0; node < count; node++) {
+                codec.encode(vectors.get(node), codes.page(node), codes.offset(node));
+            }
+            if (!rerank) {
+                vectors = new CodecVectorStore(dimension, codec, codes);
+            }
+            quantized = true;
+        } finally {
+            growthLock.writeLock().unlock();
+        }
+        LOGGER.info("Trained {} codec on {} vectors: traversal reads {} bytes per vector instead of {}",
+                codec.getClass().getSimpleName(), count, codec.codeSize(), dimension * Float.BYTES);
+    }
+
+    /**
+     * The id stored at {@code node}. Reads {@link #ids} afresh because searches run without the growth lock:
+     * a node linked or indexed by a concurrent upsert can lie beyond an array read earlier in the search.
+     */
+    private String idAt(int node) {
+        String[] assigned = ids;
+        return node < assigned.length ? assigned[node] : null;
     }
 
-    private void insert(VectorRecord record) {
+    private NodeScorer scorer(float[] target, boolean useCodes) {
+        if (useCodes) {
+            VectorCodec.CodeScorer codeScorer = codec.scorer(target);
+            return node -> codeScorer.distance(codes.page(node), codes.offset(node));
+        }
+        VectorStore store = vectors;
+        return node -> store.distance(distanceFunction, target, node);
+    }
+
+    private void insert(int node, NodeScorer scorer) {
         int level = sampleLevel();
-        HnswNode node = new HnswNode(record, level);
-        nodes.put(record.id(), node);
+        ReentrantLock nodeLock = nodeLock(node);
+        nodeLock.lock();
+        try {
+            graph.reset(node, level);
+        } finally {
+            nodeLock.unlock();
+        }
+        EntryPoint entry = entryPoint;
+        boolean promotes = entry == null || level > entry.level();
+        if (promotes) {
+            entryLock.lock();
+        }
+        try {
+            if (promotes) {
+                entry = entryPoint;
+                if (entry == null) {
+                    entryPoint = new EntryPoint(node, level);
+                    return;
+                }
+            }
 
-        if (entryPoint == null) {
-            entryPoint = node;
-            maxLevel = level;
-            return;
+            Traversal traversal = new Traversal();
+            SearchEntry closest = greedyClosest(scorer, entry, level, node, traversal);
+            for (int l = Math.min(level, entry.level()); l >= 0; l--) {
+                var neighbors = searchLayer(scorer, closest, l, efConstruction, null, 0, 0, traversal);
+                connect(node, neighbors, l);
+                closest = nearest(neighbors, closest);
+            }
+
+            if (level > entry.level()) {
+                entryPoint = new EntryPoint(node, level);
+            }
+        } finally {
+            if (promotes) {
+                entryLock.unlock();
+            }
         }
+    }
 
-        HnswNode curr = entryPoint;
-        double currDist = distanceFunction.distance(record.values(), curr.record.values());
-        for (int l = maxLevel; l > level; l--) {
+    private SearchEntry greedyClosest(NodeScorer scorer, EntryPoint entry, int targetLevel, int exclude,
+                                      Traversal traversal) {
+        int curr = entry.node();
+        double currDist = scorer.distance(curr);
+        traversal.computations++;
+        for (int level = entry.level(); level > targetLevel; level--) {
             boolean changed;
             do {
                 changed = false;
-                for (HnswNode neighbor : curr.neighborsAt(l)) {
-                    double dist = distanceFunction.distance(record.values(), neighbor.record.values());
+                traversal.hops++;
+                int[] block = graph.block(curr, level);
+                if (block == null) {
+                    break;
+                }
+                int base = graph.base(curr, level);
+                int count = NeighborGraph.count(block, base);
+                for (int i = 0; i < count; i++) {
+                    int neighbor = NeighborGraph.neighbor(block, base, i);
+                    if (neighbor == exclude || graph.level(neighbor) < level) {
+                        continue;
+                    }
+                    double dist = scorer.distance(neighbor);
+                    traversal.computations++;
                     if (dist < currDist) {
                         currDist = dist;
                         curr = neighbor;
@@ -159,102 +1040,282 @@ public final class HnswIndex {
                 }
             } while (changed);
         }
-
-        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
-            var neighbors = searchLayer(record.values(), curr, l, efConstruction);
-            connect(node, neighbors, l);
-        }
-
-        if (level > maxLevel) {
-            maxLevel = level;
-            entryPoint = node;
-        }
+        return new SearchEntry(curr, currDist);
     }
 
-    private PriorityQueue<SearchEntry> searchLayer(float[] target, HnswNode entry, int level, int ef) {
-        PriorityQueue<SearchEntry> candidates = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
-        PriorityQueue<SearchEntry> best = new PriorityQueue<>(Comparator.comparingDouble(a -> a.distance));
-        Set<String> visited = new HashSet<>();
-
-        double entryDist = distanceFunction.distance(target, entry.record.values());
-        SearchEntry first = new SearchEntry(entry, entryDist);
-        candidates.add(first);
-        best.add(first);
-        visited.add(entry.record.id());
-
-        while (!candidates.isEmpty()) {
-            SearchEntry farthest = candidates.poll();
-            SearchEntry worst = best.peek();
-            if (worst != null && farthest.distance > worst.distance) {
-                break;
+    /**
+     * Best-first search of one layer. Nodes rejected by {@code accept} (tombstones, filter misses) are still
+     * expanded but never enter the result set, so the search keeps going until it has {@code ef} accepted
+     * nodes or runs out. A {@code null} predicate accepts every node.
+     *
+     * <p>A positive {@code budget} caps the number of distance computations and a positive {@code patience}
+     * stops the search after that many consecutive expansions added nothing to the result set, bounding tail
+     * latency on queries that would otherwise wander through a saturated neighborhood.
+     */
+    private PriorityQueue<SearchEntry> searchLayer(NodeScorer scorer, SearchEntry entry, int level, int ef,
+                                                   IntPredicate accept, int budget, int patience,
+                                                   Traversal traversal) {
+        PriorityQueue<SearchEntry> candidates = new PriorityQueue<>(Comparator.comparingDouble(a -> a.distance));
+        PriorityQueue<SearchEntry> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+        VisitedList visited = visitedLists.acquire(nextOrdinal.get());
+        int computations = 0;
+        int stale = 0;
+        try {
+            candidates.add(entry);
+            if (accept == null || accept.test(entry.node)) {
+                best.add(entry);
             }
-            for (HnswNode neighbor : farthest.node.neighborsAt(level)) {
-                if (!visited.add(neighbor.record.id())) {
+            visited.visit(entry.node);
+
+            while (!candidates.isEmpty()) {
+                SearchEntry nearest = candidates.poll();
+                SearchEntry worst = best.peek();
+                if (best.size() >= ef && nearest.distance > worst.distance) {
+                    break;
+                }
+                if ((budget > 0 && computations >= budget) || (patience > 0 && stale >= patience)) {
+                    break;
+                }
+                boolean improved = false;
+                traversal.hops++;
+                int[] block = graph.block(nearest.node, level);
+                if (block == null) {
                     continue;
                 }
-                double dist = distanceFunction.distance(target, neighbor.record.values());
-                SearchEntry candidate = new SearchEntry(neighbor, dist);
-                if (best.size() < ef || dist < best.peek().distance) {
-                    candidates.add(candidate);
-                    best.add(candidate);
-                    if (best.size() > ef) {
-                        best.poll();
+                int base = graph.base(nearest.node, level);
+                int count = NeighborGraph.count(block, base);
+                for (int i = 0; i < count; i++) {
+                    int neighbor = NeighborGraph.neighbor(block, base, i);
+                    if (!visited.visit(neighbor)) {
+                        continue;
+                    }
+                    double dist = scorer.distance(neighbor);
+                    computations++;
+                    if (best.size() < ef || dist < best.peek().distance) {
+                        SearchEntry candidate = new SearchEntry(neighbor, dist);
+                        candidates.add(candidate);
+                        if (accept == null || accept.test(neighbor)) {
+                            best.add(candidate);
+                            improved = true;
+                            if (best.size() > ef) {
+                                best.poll();
+                            }
+                        }
                     }
                 }
+                stale = improved ? 0 : stale + 1;
             }
+        } finally {
+            visitedLists.release(visited);
         }
+        traversal.computations += computations;
+        traversal.visited += computations + 1;
 
         return best;
     }
 
-    private void connect(HnswNode node, PriorityQueue<SearchEntry> neighbors, int level) {
-        List<SearchEntry> sorted = new ArrayList<>(neighbors);
+    private static SearchEntry nearest(PriorityQueue<SearchEntry> entries, SearchEntry fallback) {
+        SearchEntry nearest = fallback;
+        for (SearchEntry entry : entries) {
+            if (entry.distance < nearest.distance) {
+                nearest = entry;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Links {@code node} to up to {@code m} diverse candidates on {@code level} and adds the reverse links.
+     */
+    private void connect(int node, PriorityQueue<SearchEntry> neighbors, int level) {
+        List<SearchEntry> sorted = new ArrayList<>(neighbors.size());
+        for (SearchEntry neighbor : neighbors) {
+            if (neighbor.node != node && graph.level(neighbor.node) >= level) {
+                sorted.add(neighbor);
+            }
+        }
         sorted.sort(Comparator.comparingDouble(a -> a.distance));
-        int added = 0;
-        for (SearchEntry neighborEntry : sorted) {
-            HnswNode neighbor = neighborEntry.node;
-            node.ensureLevel(level);
-            neighbor.ensureLevel(level);
-            node.neighborsAt(level).add(neighbor);
-            neighbor.neighborsAt(level).add(node);
-            trim(neighbor.neighborsAt(level));
-            if (++added >= m) {
+        int[] selected = new int[m];
+        int count = selectNeighbors(sorted, m, false, selected);
+        for (int i = 0; i < count; i++) {
+            link(node, selected[i], level);
+            link(selected[i], node, level);
+        }
+    }
+
+    /**
+     * Adds {@code to} to the list of {@code from}. A full list is shrunk back to the layer's maximum degree by
+     * rerunning the selection heuristic over the old neighbors plus {@code to}.
+     */
+    private void link(int from, int to, int level) {
+        ReentrantLock lock = nodeLock(from);
+        lock.lock();
+        try {
+            if (graph.block(from, level) == null
+                    || graph.contains(from, level, to)
+                    || graph.append(from, level, to)) {
+                return;
+            }
+            int maxDegree = graph.maxDegree(level);
+            int[] current = new int[maxDegree + 1];
+            int degree = graph.copyNeighbors(from, level, current);
+            current[degree] = to;
+            VectorStore store = vectors;
+            float[] base = store.get(from);
+            List<SearchEntry> candidates = new ArrayList<>(degree + 1);
+            for (int i = 0; i <= degree; i++) {
+                candidates.add(new SearchEntry(current[i], store.distance(distanceFunction, base, current[i])));
+            }
+            candidates.sort(Comparator.comparingDouble(a -> a.distance));
+            int size = selectNeighbors(candidates, maxDegree, false, current);
+            graph.setNeighbors(from, level, current, size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Neighbor selection heuristic of the HNSW paper (Algorithm 4). Walks {@code candidates}, sorted by distance
+     * to the base node, and keeps a candidate only if it is closer to the base node than to every neighbor kept
+     * so far, so links spread over several directions instead of piling into one cluster. With
+     * {@code keepPruned} the remaining slots are filled with the nearest discarded candidates.
+     *
+     * @return the number of nodes written to {@code selected}
+     */
+    private int selectNeighbors(List<SearchEntry> candidates, int limit, boolean keepPruned, int[] selected) {
+        VectorStore store = vectors;
+        List<SearchEntry> pruned = keepPruned ? new ArrayList<>() : List.of();
+        int count = 0;
+        for (SearchEntry candidate : candidates) {
+            if (count >= limit) {
                 break;
             }
+            float[] values = store.get(candidate.node);
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = store.distance(distanceFunction, values, selected[i]) >= candidate.distance;
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            } else if (keepPruned) {
+                pruned.add(candidate);
+            }
         }
-        trim(node.neighborsAt(level));
+        for (int i = 0; i < pruned.size() && count < limit; i++) {
+            selected[count++] = pruned.get(i).node;
+        }
+        return count;
     }
 
-    private void trim(Set<HnswNode> neighbors) {
-        if (neighbors.size() <= m) {
-            return;
+    private void tombstone(int node) {
+        metadataIndex.remove(node, metadata.get(node));
+        metadata.clear(node);
+        ids[node] = null;
+        tombstones.add(node);
+        tombstoneCount.incrementAndGet();
+    }
+
+    private ReentrantLock idLock(String id) {
+        return idLocks[(id.hashCode() & 0x7fffffff) % ID_LOCK_STRIPES];
+    }
+
+    private ReentrantLock nodeLock(int node) {
+        return nodeLocks[node & (NODE_LOCK_STRIPES - 1)];
+    }
+
+    private int sampleLevel() {
+        return (int) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private static ReentrantLock[] newLocks(int stripes) {
+        ReentrantLock[] locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
         }
-        List<HnswNode> ordered = new ArrayList<>(neighbors);
-        ordered.sort(Comparator.comparingInt(a -> a.neighborsAt(0).size()));
-        while (ordered.size() > m) {
-            HnswNode removed = ordered.remove(ordered.size() - 1);
-            neighbors.remove(removed);
+        return locks;
+    }
+
+    /**
+     * Current vector of {@code id}, found at {@code node} unless it has been updated since, or an empty array if
+     * it has been deleted. A record that keeps moving while it is read is re-resolved once and then reported as
+     * deleted.
+     */
+    private float[] values(int node, String id) {
+        for (int attempt = 0, current = node; attempt < 2 && (current = locate(current, id)) >= 0; attempt++) {
+            float[] values = vectors.get(current);
+            if (id.equals(ids[current])) {
+                return values;
+            }
         }
+        return new float[0];
     }
 
-    private void remove(HnswNode node) {
-        for (int level = 0; level <= node.level; level++) {
-            for (HnswNode neighbor : new HashSet<>(node.neighborsAt(level))) {
-                neighbor.neighborsAt(level).remove(node);
+    private Map<String, String> metadata(int node, String id) {
+        for (int attempt = 0, current = node; attempt < 2 && (current = locate(current, id)) >= 0; attempt++) {
+            Map<String, String> values = metadata.get(current);
+            if (id.equals(ids[current])) {
+                return values;
             }
         }
-        nodes.remove(node.record.id());
-        if (entryPoint == node) {
-            entryPoint = nodes.values().stream().findAny().orElse(null);
-            maxLevel = entryPoint != null ? entryPoint.level : 0;
+        return Map.of();
+    }
+
+    private int locate(int node, String id) {
+        if (id.equals(ids[node])) {
+            return node;
         }
+        Integer current = ordinals.get(id);
+        return current == null ? -1 : current;
     }
 
-    private int sampleLevel() {
-        return (int) (-Math.log(levelRandom.nextDouble()) * 0.5);
+    /**
+     * A search hit. Values and metadata stay in the index until asked for, so callers that only need ids and
+     * scores copy nothing; they reflect the record at the time they are read.
+     */
+    public static final class SearchResult {
+        private final HnswIndex source;
+        private final int node;
+        private final String id;
+        private final double distance;
+
+        private SearchResult(HnswIndex source, int node, String id, double distance) {
+            this.source = source;
+            this.node = node;
+            this.id = id;
+            this.distance = distance;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public double distance() {
+            return distance;
+        }
+
+        public float[] values() {
+            return source.values(node, id);
+        }
+
+        public Map<String, String> metadata() {
+            return source.metadata(node, id);
+        }
     }
 
-    public record SearchResult(VectorRecord record, double distance) {}
+    private record SearchEntry(int node, double distance) {}
 
-    private record SearchEntry(HnswNode node, double distance) {}
+    private interface NodeScorer {
+        double distance(int node);
+    }
+
+    private record EntryPoint(int node, int level) {}
+
+    /**
+     * Per-call traversal counters, reported to {@link IndexMetrics} once the search completes.
+     */
+    private static final class Traversal {
+        int computations;
+        int hops;
+        int visited;
+    }
 }
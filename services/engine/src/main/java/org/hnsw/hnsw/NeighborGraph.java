@@ -0,0 +1,206 @@
+package org.hnsw.hnsw;
+
+import static org.hnsw.hnsw.VectorStore.PAGE_MASK;
+import static org.hnsw.hnsw.VectorStore.PAGE_SHIFT;
+import static org.hnsw.hnsw.VectorStore.PAGE_SIZE;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+/**
+ * Adjacency lists keyed by node ordinal. Every list is a fixed-capacity block whose first slot holds the
+ * current degree, followed by up to {@code maxM0} (layer 0) or {@code maxM} (upper layers) neighbor ordinals.
+ *
+ * <p>Writers mutate a node's block only while holding that node's lock in {@link HnswIndex}. Slots are
+ * written with release and read with acquire semantics so lock-free searches always observe ordinals
+ * whose vectors have already been published.
+ */
+final class NeighborGraph {
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int maxM;
+    private final int maxM0;
+    private final int stride0;
+    private final int strideUpper;
+
+    private volatile int[][] level0Pages = new int[0][];
+    private volatile int[][] upper = new int[0][];
+
+    NeighborGraph(int maxM, int maxM0) {
+        this.maxM = maxM;
+        this.maxM0 = maxM0;
+        this.stride0 = maxM0 + 1;
+        this.strideUpper = maxM + 1;
+    }
+
+    int maxDegree(int layer) {
+        return layer == 0 ? maxM0 : maxM;
+    }
+
+    int capacity() {
+        return level0Pages.length << PAGE_SHIFT;
+    }
+
+    long memoryBytes() {
+        long bytes = (long) level0Pages.length * PAGE_SIZE * stride0 * Integer.BYTES;
+        for (int[] links : upper) {
+            if (links != null) {
+                bytes += (long) links.length * Integer.BYTES;
+            }
+        }
+        return bytes;
+    }
+
+    void ensureCapacity(int nodes) {
+        int required = (nodes + PAGE_MASK) >>> PAGE_SHIFT;
+        if (required <= level0Pages.length) {
+            return;
+        }
+        int[][] grown = Arrays.copyOf(level0Pages, Math.max(required, level0Pages.length * 2));
+        for (int i = level0Pages.length; i < grown.length; i++) {
+            grown[i] = new int[PAGE_SIZE * stride0];
+        }
+        upper = Arrays.copyOf(upper, grown.length << PAGE_SHIFT);
+        level0Pages = grown;
+    }
+
+    void reset(int node, int level) {
+        SLOTS.setRelease(level0Pages[node >>> PAGE_SHIFT], (node & PAGE_MASK) * stride0, 0);
+        upper[node] = level > 0 ? new int[level * strideUpper] : null;
+    }
+
+    int level(int node) {
+        int[] links = upper[node];
+        return links == null ? 0 : links.length / strideUpper;
+    }
+
+    /**
+     * Returns the block holding {@code node}'s list at {@code layer}, or {@code null} when the node does not
+     * reach that layer (for instance because it was re-inserted at a lower level while being traversed).
+     */
+    int[] block(int node, int layer) {
+        if (layer == 0) {
+            return level0Pages[node >>> PAGE_SHIFT];
+        }
+        int[] links = upper[node];
+        return links != null && links.length >= layer * strideUpper ? links : null;
+    }
+
+    int base(int node, int layer) {
+        return layer == 0 ? (node & PAGE_MASK) * stride0 : (layer - 1) * strideUpper;
+    }
+
+    static int count(int[] block, int base) {
+        return (int) SLOTS.getAcquire(block, base);
+    }
+
+    static int neighbor(int[] block, int base, int index) {
+        return (int) SLOTS.getAcquire(block, base + 1 + index);
+    }
+
+    int degree(int node, int layer) {
+        int[] block = block(node, layer);
+        return block == null ? 0 : count(block, base(node, layer));
+    }
+
+    boolean contains(int node, int layer, int neighbor) {
+        int[] block = block(node, layer);
+        int base = base(node, layer);
+        int count = count(block, base);
+        for (int i = 0; i < count; i++) {
+            if (neighbor(block, base, i) == neighbor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int copyNeighbors(int node, int layer, int[] target) {
+        int[] block = block(node, layer);
+        if (block == null) {
+            return 0;
+        }
+        int base = base(node, layer);
+        int count = count(block, base);
+        for (int i = 0; i < count; i++) {
+            target[i] = neighbor(block, base, i);
+        }
+        return count;
+    }
+
+    boolean append(int node, int layer, int neighbor) {
+        int[] block = block(node, layer);
+        int base = base(node, layer);
+        int count = count(block, base);
+        if (count >= maxDegree(layer)) {
+            return false;
+        }
+        SLOTS.setRelease(block, base + 1 + count, neighbor);
+        SLOTS.setRelease(block, base, count + 1);
+        return true;
+    }
+
+    void setNeighbors(int node, int layer, int[] neighbors, int count) {
+        int[] block = block(node, layer);
+        int base = base(node, layer);
+        int size = Math.min(count, maxDegree(layer));
+        for (int i = 0; i < size; i++) {
+            SLOTS.setRelease(block, base + 1 + i, neighbors[i]);
+        }
+        SLOTS.setRelease(block, base, size);
+    }
+
+    void remove(int node, int layer, int neighbor) {
+        int[] block = block(node, layer);
+        if (block == null) {
+            return;
+        }
+        int base = base(node, layer);
+        int count = count(block, base);
+        for (int i = 0; i < count; i++) {
+            if (neighbor(block, base, i) == neighbor) {
+                SLOTS.setRelease(block, base + 1 + i, neighbor(block, base, count - 1));
+                SLOTS.setRelease(block, base, count - 1);
+                return;
+            }
+        }
+    }
+
+    void write(SnapshotOutput out, int count) throws IOException {
+        int[][] pages = level0Pages;
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            out.writeInts(pages[start >>> PAGE_SHIFT], 0, Math.min(PAGE_SIZE, count - start) * stride0);
+        }
+        int[][] links = upper;
+        for (int node = 0; node < count; node++) {
+            int[] block = links[node];
+            if (block == null) {
+                out.writeInt(0);
+            } else {
+                out.writeInt(block.length);
+                out.writeInts(block, 0, block.length);
+            }
+        }
+    }
+
+    void read(SnapshotInput in, int count) throws IOException {
+        ensureCapacity(count);
+        int[][] pages = level0Pages;
+        for (int start = 0; start < count; start += PAGE_SIZE) {
+            in.readInts(pages[start >>> PAGE_SHIFT], 0, Math.min(PAGE_SIZE, count - start) * stride0);
+        }
+        int[][] links = upper;
+        for (int node = 0; node < count; node++) {
+            int length = in.readInt();
+            if (length > 0) {
+                int[] block = new int[length];
+                in.readInts(block, 0, length);
+                links[node] = block;
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.hnsw.hnsw;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.hnsw.distance.DistanceFunction;
+
+/**
+ * Full-precision vectors kept in direct memory. Used behind a quantized index, where traversal runs on codes
+ * and only the final candidates are read back for reranking. Distances copy the vectors into scratch arrays
+ * borrowed from a small pool rather than a new one per call; the pool is shared, not per thread, so short-lived
+ * virtual threads reuse them too.
+ */
+final class OffHeapVectorStore implements VectorStore {
+    private final int dimension;
+    private static final int POOLED_SCRATCH = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final AtomicReferenceArray<float[]> scratch = new AtomicReferenceArray<>(POOLED_SCRATCH);
+    private volatile FloatBuffer[] pages = new FloatBuffer[0];
+
+    OffHeapVectorStore(int dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int capacity() {
+        return pages.length << PAGE_SHIFT;
+    }
+
+    @Override
+    public void ensureCapacity(int nodes) {
+        int required = (nodes + PAGE_MASK) >>> PAGE_SHIFT;
+        if (required <= pages.length) {
+            return;
+        }
+        FloatBuffer[] grown = Arrays.copyOf(pages, Math.max(required, pages.length * 2));
+        for (int i = pages.length; i < grown.length; i++) {
+            grown[i] = ByteBuffer.allocateDirect(PAGE_SIZE * dimension * Float.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+        }
+        pages = grown;
+    }
+
+    @Override
+    public void set(int node, float[] values) {
+        pages[node >>> PAGE_SHIFT].put((node & PAGE_MASK) * dimension, values, 0, dimension);
+    }
+
+    @Override
+    public float[] get(int node) {
+        float[] values = new float[dimension];
+        pages[node >>> PAGE_SHIFT].get((node & PAGE_MASK) * dimension, values, 0, dimension);
+        return values;
+    }
+
+    @Override
+    public double distance(DistanceFunction distanceFunction, float[] query, int node) {
+        float[] values = acquire(dimension);
+        try {
+            pages[node >>> PAGE_SHIFT].get((node & PAGE_MASK) * dimension, values, 0, dimension);
+            return distanceFunction.distance(query, values, 0);
+        } finally {
+            release(values);
+        }
+    }
+
+    @Override
+    public void distances(DistanceFunction distanceFunction, float[] query, int node, int count, double[] out) {
+        float[] block = acquire(count * dimension);
+        try {
+            pages[node >>> PAGE_SHIFT].get((node & PAGE_MASK) * dimension, block, 0, count * dimension);
+            distanceFunction.distances(query, block, 0, count, out);
+        } finally {
+            release(block);
+        }
+    }
+
+    private float[] acquire(int length) {
+        for (int i = 0; i < POOLED_SCRATCH; i++) {
+            if (scratch.get(i) != null) {
+                float[] values = scratch.getAndSet(i, null);
+                if (values != null && values.length >= length) {
+                    return values;
+                }
+            }
+        }
+        return new float[length];
+    }
+
+    private void release(float[] values) {
+        for (int i = 0; i < POOLED_SCRATCH; i++) {
+            if (scratch.compareAndSet(i, null, values)) {
+                return;
+            }
+        }
+    }
+}
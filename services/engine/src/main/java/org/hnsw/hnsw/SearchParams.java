@@ -0,0 +1,25 @@
+package org.hnsw.hnsw;
+
+/**
+ * Per-query search knobs. Zero means "use the index default" for {@code ef} and "unlimited" for the two
+ * early-termination limits.
+ *
+ * @param ef                      size of the dynamic candidate list; raised to {@code topK} when smaller
+ * @param maxDistanceComputations stop expanding layer 0 after this many distance evaluations
+ * @param patience                stop after this many consecutive expansions that did not improve the results
+ * @param exact                   score every live vector instead of traversing the graph; the other knobs are
+ *                                ignored. Quantized indexes that do not keep full-precision vectors refuse it
+ */
+public record SearchParams(int ef, int maxDistanceComputations, int patience, boolean exact) {
+    public static final SearchParams DEFAULT = new SearchParams(0, 0, 0);
+
+    public SearchParams {
+        if (ef < 0 || maxDistanceComputations < 0 || patience < 0) {
+            throw new IllegalArgumentException("Search parameters must not be negative");
+        }
+    }
+
+    public SearchParams(int ef, int maxDistanceComputations, int patience) {
+        this(ef, maxDistanceComputations, patience, false);
+    }
+}
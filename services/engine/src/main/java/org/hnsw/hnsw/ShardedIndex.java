@@ -0,0 +1,320 @@
+package org.hnsw.hnsw;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.metrics.IndexMetrics;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+import org.hnsw.quantization.QuantizationConfig;
+
+/**
+ * A namespace split into independent {@link HnswIndex} shards, with every id routed to one shard by its hash.
+ * Batches are grouped by shard and inserted into all shards at once; searches run on every shard concurrently
+ * on virtual threads and the per-shard results are merged through a bounded heap.
+ *
+ * <p>Smaller graphs build faster and let one query use several cores, at the cost of {@code ef} work per shard.
+ * The shards share one {@link IndexMetrics}, so search histograms hold one sample per shard searched. Quantized
+ * shards train their codecs independently once each has seen the training size.
+ */
+public final class ShardedIndex implements VectorIndex {
+    static final int SNAPSHOT_MARKER = 0x53485244;
+
+    private static final ExecutorService FAN_OUT = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Comparator<SearchResult> FARTHEST_FIRST =
+            Comparator.comparingDouble(SearchResult::distance).reversed();
+
+    private final HnswIndex[] shards;
+    private final IndexMetrics metrics;
+
+    public ShardedIndex(int shards, int dimension, int m, int efConstruction, int efSearch,
+                        DistanceFunction distanceFunction, QuantizationConfig quantization) {
+        if (shards < 2) {
+            throw new IllegalArgumentException("A sharded index needs at least two shards");
+        }
+        this.metrics = new IndexMetrics();
+        this.shards = new HnswIndex[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new HnswIndex(dimension, m, efConstruction, efSearch, distanceFunction, quantization,
+                    metrics);
+        }
+    }
+
+    private ShardedIndex(HnswIndex[] shards, IndexMetrics metrics) {
+        this.shards = shards;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int getDimension() {
+        return shards[0].getDimension();
+    }
+
+    @Override
+    public boolean isQuantized() {
+        for (HnswIndex shard : shards) {
+            if (!shard.isQuantized()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public IndexMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public void upsert(VectorRecord record) {
+        shard(record.id()).upsert(record);
+    }
+
+    @Override
+    public void upsertAll(List<VectorRecord> records) {
+        List<List<VectorRecord>> batches = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            batches.add(new ArrayList<>());
+        }
+        for (VectorRecord record : records) {
+            batches.get(route(record.id())).add(record);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            HnswIndex shard = shards[i];
+            List<VectorRecord> batch = batches.get(i);
+            if (!batch.isEmpty()) {
+                tasks.add(() -> {
+                    shard.upsertAll(batch);
+                    return null;
+                });
+            }
+        }
+        fanOut(tasks);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return shard(id).delete(id);
+    }
+
+    @Override
+    public double tombstoneRatio() {
+        int dead = tombstoneCount();
+        return dead == 0 ? 0.0 : (double) dead / (dead + size());
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (HnswIndex shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int tombstoneCount() {
+        int dead = 0;
+        for (HnswIndex shard : shards) {
+            dead += shard.tombstoneCount();
+        }
+        return dead;
+    }
+
+    @Override
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public long version() {
+        long version = 0;
+        for (HnswIndex shard : shards) {
+            version += shard.version();
+        }
+        return version;
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (HnswIndex shard : shards) {
+            bytes += shard.memoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Degree histograms summed over the shards.
+     */
+    @Override
+    public long[][] degreeDistribution() {
+        List<long[]> layers = new ArrayList<>();
+        for (HnswIndex shard : shards) {
+            long[][] distribution = shard.degreeDistribution();
+            for (int layer = 0; layer < distribution.length; layer++) {
+                if (layer == layers.size()) {
+                    layers.add(new long[distribution[layer].length]);
+                }
+                long[] merged = layers.get(layer);
+                if (merged.length < distribution[layer].length) {
+                    merged = Arrays.copyOf(merged, distribution[layer].length);
+                    layers.set(layer, merged);
+                }
+                for (int degree = 0; degree < distribution[layer].length; degree++) {
+                    merged[degree] += distribution[layer][degree];
+                }
+            }
+        }
+        return layers.toArray(new long[0][]);
+    }
+
+    /**
+     * Searches every shard for {@code topK} results with the same parameters and keeps the overall best. The
+     * first shard is searched on the calling thread.
+     */
+    @Override
+    public List<SearchResult> search(float[] query, int topK, MetadataFilter filter, SearchParams params) {
+        if (topK <= 0) {
+            return List.of();
+        }
+        List<Callable<List<SearchResult>>> tasks = new ArrayList<>(shards.length);
+        for (HnswIndex shard : shards) {
+            tasks.add(() -> shard.search(query, topK, filter, params));
+        }
+        PriorityQueue<SearchResult> best = new PriorityQueue<>(topK + 1, FARTHEST_FIRST);
+        for (List<SearchResult> results : fanOut(tasks)) {
+            for (SearchResult result : results) {
+                if (best.size() < topK) {
+                    best.add(result);
+                } else if (result.distance() < best.peek().distance()) {
+                    best.poll();
+                    best.add(result);
+                } else {
+                    break;
+                }
+            }
+        }
+        List<SearchResult> merged = new ArrayList<>(best);
+        merged.sort(Comparator.comparingDouble(SearchResult::distance));
+        return merged;
+    }
+
+    @Override
+    public int compact() {
+        int reclaimed = 0;
+        for (HnswIndex shard : shards) {
+            reclaimed += shard.compact();
+        }
+        return reclaimed;
+    }
+
+    /**
+     * Reorders every shard concurrently.
+     */
+    @Override
+    public ShardedIndex reordered() {
+        List<Callable<HnswIndex>> tasks = new ArrayList<>(shards.length);
+        for (HnswIndex shard : shards) {
+            tasks.add(shard::reordered);
+        }
+        return new ShardedIndex(fanOut(tasks).toArray(new HnswIndex[0]), metrics);
+    }
+
+    /**
+     * Writes a marker and the shard count followed by each shard's own snapshot. Callers must keep upserts
+     * paused, as for {@link HnswIndex#writeSnapshot}.
+     */
+    @Override
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        out.writeInt(SNAPSHOT_MARKER);
+        out.writeInt(shards.length);
+        for (HnswIndex shard : shards) {
+            shard.writeSnapshot(out);
+        }
+    }
+
+    /**
+     * Reads the rest of a sharded snapshot whose marker has already been consumed.
+     */
+    static ShardedIndex readSnapshot(SnapshotInput in, DistanceFunction distanceFunction) throws IOException {
+        int count = in.readInt();
+        if (count < 2) {
+            throw new IOException("Invalid shard count " + count);
+        }
+        IndexMetrics metrics = new IndexMetrics();
+        HnswIndex[] shards = new HnswIndex[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = HnswIndex.readSnapshot(in, in.readInt(), distanceFunction, metrics);
+        }
+        return new ShardedIndex(shards, metrics);
+    }
+
+    private HnswIndex shard(String id) {
+        return shards[route(id)];
+    }
+
+    private int route(String id) {
+        return (id.hashCode() & 0x7fffffff) % shards.length;
+    }
+
+    /**
+     * Runs all but the first task on virtual threads and the first on the caller, then waits for every result.
+     * Failures are rethrown unwrapped so that argument errors keep their type.
+     */
+    private static <T> List<T> fanOut(List<Callable<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size() - 1);
+        for (int i = 1; i < tasks.size(); i++) {
+            futures.add(FAN_OUT.submit(tasks.get(i)));
+        }
+        List<T> results = new ArrayList<>(tasks.size());
+        RuntimeException failure = null;
+        try {
+            results.add(tasks.get(0).call());
+        } catch (RuntimeException ex) {
+            failure = ex;
+        } catch (Exception ex) {
+            failure = new IllegalStateException(ex);
+        }
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof RuntimeException runtime
+                                ? runtime : new IllegalStateException(ex.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+}
@@ -0,0 +1,84 @@
+package org.hnsw.hnsw;
+
+import java.io.IOException;
+import java.util.List;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.metrics.IndexMetrics;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+/**
+ * The index behind one namespace: a single {@link HnswIndex} or a {@link ShardedIndex} of several.
+ */
+public interface VectorIndex {
+
+    int getDimension();
+
+    boolean isQuantized();
+
+    IndexMetrics metrics();
+
+    void upsert(VectorRecord record);
+
+    /**
+     * Applies a batch of upserts. Records with the same id are applied in list order.
+     */
+    default void upsertAll(List<VectorRecord> records) {
+        for (VectorRecord record : records) {
+            upsert(record);
+        }
+    }
+
+    boolean delete(String id);
+
+    double tombstoneRatio();
+
+    int size();
+
+    int tombstoneCount();
+
+    int shardCount();
+
+    /**
+     * Counter that grows with every upsert and delete, once the change is visible to searches. Results computed
+     * while it stayed the same are still current.
+     */
+    long version();
+
+    long memoryBytes();
+
+    long[][] degreeDistribution();
+
+    default List<SearchResult> search(float[] query, int topK) {
+        return search(query, topK, null);
+    }
+
+    default List<SearchResult> search(float[] query, int topK, MetadataFilter filter) {
+        return search(query, topK, filter, SearchParams.DEFAULT);
+    }
+
+    List<SearchResult> search(float[] query, int topK, MetadataFilter filter, SearchParams params);
+
+    int compact();
+
+    /**
+     * Returns a compacted copy with nodes renumbered so that graph neighbors sit close together in memory, for
+     * the caller to swap in. Callers must keep upserts paused; searches may continue on this index.
+     */
+    VectorIndex reordered();
+
+    void writeSnapshot(SnapshotOutput out) throws IOException;
+
+    /**
+     * Reads a snapshot written by either implementation.
+     */
+    static VectorIndex readSnapshot(SnapshotInput in, DistanceFunction distanceFunction) throws IOException {
+        int header = in.readInt();
+        return header == ShardedIndex.SNAPSHOT_MARKER
+                ? ShardedIndex.readSnapshot(in, distanceFunction)
+                : HnswIndex.readSnapshot(in, header, distanceFunction, new IndexMetrics());
+    }
+}
@@ -0,0 +1,58 @@
+package org.hnsw.hnsw;
+
+import java.io.IOException;
+import java.util.Arrays;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+interface VectorStore {
+    int PAGE_SHIFT = 10;
+    int PAGE_SIZE = 1 << PAGE_SHIFT;
+    int PAGE_MASK = PAGE_SIZE - 1;
+
+    int dimension();
+
+    int capacity();
+
+    void ensureCapacity(int nodes);
+
+    void set(int node, float[] values);
+
+    float[] get(int node);
+
+    double distance(DistanceFunction distanceFunction, float[] query, int node);
+
+    /**
+     * Distances from {@code query} to nodes {@code [node, node + count)}, which must lie in one page.
+     */
+    default void distances(DistanceFunction distanceFunction, float[] query, int node, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            out[i] = distance(distanceFunction, query, node + i);
+        }
+    }
+
+    default long memoryBytes() {
+        return (long) capacity() * dimension() * Float.BYTES;
+    }
+
+    default boolean matches(int node, float[] values) {
+        return Arrays.equals(get(node), values);
+    }
+
+    default void write(SnapshotOutput out, int count) throws IOException {
+        for (int node = 0; node < count; node++) {
+            float[] values = get(node);
+            out.writeFloats(values, 0, values.length);
+        }
+    }
+
+    default void read(SnapshotInput in, int count) throws IOException {
+        ensureCapacity(count);
+        float[] values = new float[dimension()];
+        for (int node = 0; node < count; node++) {
+            in.readFloats(values, 0, values.length);
+            set(node, values);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.hnsw.hnsw;
+
+import java.util.Arrays;
+
+final class VisitedList {
+    private static final int MAX_GENERATION = 0xFFFF;
+
+    private short[] marks;
+    private int generation;
+
+    VisitedList(int capacity) {
+        this.marks = new short[capacity];
+    }
+
+    void reset(int capacity) {
+        if (marks.length < capacity) {
+            marks = new short[Math.max(capacity, marks.length * 2)];
+            generation = 0;
+        }
+        if (++generation > MAX_GENERATION) {
+            Arrays.fill(marks, (short) 0);
+            generation = 1;
+        }
+    }
+
+    boolean visit(int node) {
+        if (node >= marks.length) {
+            marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+        }
+        short stamp = (short) generation;
+        if (marks[node] == stamp) {
+            return false;
+        }
+        marks[node] = stamp;
+        return true;
+    }
+}
@@ -0,0 +1,21 @@
+package org.hnsw.hnsw;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+final class VisitedListPool {
+    private final Queue<VisitedList> pool = new ConcurrentLinkedQueue<>();
+
+    VisitedList acquire(int capacity) {
+        VisitedList list = pool.poll();
+        if (list == null) {
+            list = new VisitedList(capacity);
+        }
+        list.reset(capacity);
+        return list;
+    }
+
+    void release(VisitedList list) {
+        pool.offer(list);
+    }
+}
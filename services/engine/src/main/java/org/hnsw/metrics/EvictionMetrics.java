@@ -0,0 +1,26 @@
+package org.hnsw.metrics;
+
+/**
+ * Timings of namespaces written to and read back from cold storage, in nanoseconds. Counts are the
+ * histograms' counts.
+ */
+public final class EvictionMetrics {
+    private final Histogram evictions = new Histogram();
+    private final Histogram reloads = new Histogram();
+
+    public void recordEviction(long nanos) {
+        evictions.record(nanos);
+    }
+
+    public void recordReload(long nanos) {
+        reloads.record(nanos);
+    }
+
+    public Histogram evictions() {
+        return evictions;
+    }
+
+    public Histogram reloads() {
+        return reloads;
+    }
+}
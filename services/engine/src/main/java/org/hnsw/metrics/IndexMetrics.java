@@ -0,0 +1,84 @@
+package org.hnsw.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot-path counters of one index. Latencies and lock waits are in nanoseconds; traversal histograms count
+ * distance computations, expanded nodes (hops) and visited nodes per query.
+ */
+public final class IndexMetrics {
+    private final Histogram searchLatency = new Histogram();
+    private final Histogram distanceComputations = new Histogram();
+    private final Histogram hops = new Histogram();
+    private final Histogram visited = new Histogram();
+    private final Histogram upsertLatency = new Histogram();
+    private final Histogram lockWait = new Histogram();
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder exactSearches = new LongAdder();
+    private final LongAdder deletes = new LongAdder();
+
+    public void recordSearch(long nanos, int computations, int expanded, int visitedNodes, boolean scanned,
+                             boolean exact) {
+        searchLatency.record(nanos);
+        distanceComputations.record(computations);
+        hops.record(expanded);
+        visited.record(visitedNodes);
+        if (scanned) {
+            scans.increment();
+        }
+        if (exact) {
+            exactSearches.increment();
+        }
+    }
+
+    public void recordUpsert(long nanos, long lockWaitNanos) {
+        upsertLatency.record(nanos);
+        lockWait.record(lockWaitNanos);
+    }
+
+    public void recordDelete() {
+        deletes.increment();
+    }
+
+    public Histogram searchLatency() {
+        return searchLatency;
+    }
+
+    public Histogram distanceComputations() {
+        return distanceComputations;
+    }
+
+    public Histogram hops() {
+        return hops;
+    }
+
+    public Histogram visited() {
+        return visited;
+    }
+
+    public Histogram upsertLatency() {
+        return upsertLatency;
+    }
+
+    public Histogram lockWait() {
+        return lockWait;
+    }
+
+    /**
+     * Filtered searches answered by scanning the matching nodes instead of traversing the graph.
+     */
+    public long scans() {
+        return scans.sum();
+    }
+
+    /**
+     * Searches that scored every live vector, because the index was small or the query asked for exact results.
+     */
+    public long exactSearches() {
+        return exactSearches.sum();
+    }
+
+    public long deletes() {
+        return deletes.sum();
+    }
+}
@@ -0,0 +1,176 @@
+package org.hnsw.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.hnsw.store.QueryCache;
+
+/**
+ * Serves index and RPC metrics at {@code /metrics} in the Prometheus text exposition format. Histograms are
+ * exported as summaries; graph-shape statistics are left to the {@code Stats} RPC since they walk the graph.
+ */
+public final class PrometheusEndpoint implements Closeable {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final NamespaceIndexRegistry registry;
+    private final RpcMetrics rpcMetrics;
+    private final HttpServer server;
+
+    public PrometheusEndpoint(int port, NamespaceIndexRegistry registry, RpcMetrics rpcMetrics) throws IOException {
+        this.registry = registry;
+        this.rpcMetrics = rpcMetrics;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render() {
+        Map<String, VectorIndex> indexes = new TreeMap<>();
+        for (String namespace : registry.namespaces()) {
+            VectorIndex index = registry.peek(namespace);
+            if (index != null) {
+                indexes.put(namespace, index);
+            }
+        }
+        StringBuilder out = new StringBuilder();
+        gauge(out, "hensaw_namespace_vectors", "Live vectors per namespace", indexes, VectorIndex::size);
+        gauge(out, "hensaw_namespace_shards", "Sub-indexes per namespace", indexes, VectorIndex::shardCount);
+        gauge(out, "hensaw_namespace_tombstones", "Deleted nodes awaiting compaction", indexes,
+                VectorIndex::tombstoneCount);
+        gauge(out, "hensaw_namespace_memory_bytes", "Approximate bytes held by vectors, codes and graph", indexes,
+                VectorIndex::memoryBytes);
+        counter(out, "hensaw_deletes_total", "Deleted vectors", indexes, index -> index.metrics().deletes());
+        counter(out, "hensaw_filtered_scans_total", "Filtered searches answered by a scan", indexes,
+                index -> index.metrics().scans());
+        counter(out, "hensaw_exact_searches_total", "Searches answered by scoring every vector", indexes,
+                index -> index.metrics().exactSearches());
+        summary(out, "hensaw_search_latency_seconds", "Search latency", indexes,
+                index -> index.metrics().searchLatency(), NANOS_PER_SECOND);
+        summary(out, "hensaw_search_distance_computations", "Distance computations per search", indexes,
+                index -> index.metrics().distanceComputations(), 1.0);
+        summary(out, "hensaw_search_hops", "Expanded nodes per search", indexes,
+                index -> index.metrics().hops(), 1.0);
+        summary(out, "hensaw_search_visited_nodes", "Visited nodes per search", indexes,
+                index -> index.metrics().visited(), 1.0);
+        summary(out, "hensaw_upsert_latency_seconds", "Upsert latency per vector", indexes,
+                index -> index.metrics().upsertLatency(), NANOS_PER_SECOND);
+        summary(out, "hensaw_upsert_lock_wait_seconds", "Time upserts spent waiting for locks", indexes,
+                index -> index.metrics().lockWait(), NANOS_PER_SECOND);
+        cacheCounter(out, "hensaw_query_cache_hits_total", "Searches answered from the query cache", indexes,
+                QueryCache::hits);
+        cacheCounter(out, "hensaw_query_cache_misses_total", "Searches the query cache could not answer", indexes,
+                QueryCache::misses);
+
+        header(out, "hensaw_resident_bytes", "Approximate bytes held by resident namespaces", "gauge");
+        out.append("hensaw_resident_bytes ").append(registry.residentBytes()).append('\n');
+        header(out, "hensaw_memory_budget_bytes", "Memory budget for resident namespaces, 0 if unlimited", "gauge");
+        out.append("hensaw_memory_budget_bytes ").append(registry.memoryBudget()).append('\n');
+        header(out, "hensaw_evicted_namespaces", "Namespaces currently in cold storage", "gauge");
+        out.append("hensaw_evicted_namespaces ").append(registry.evictedNamespaces().size()).append('\n');
+        EvictionMetrics eviction = registry.evictionMetrics();
+        header(out, "hensaw_eviction_seconds", "Time to write a namespace to cold storage", "summary");
+        summarySamples(out, "hensaw_eviction_seconds", null, null, eviction.evictions(), NANOS_PER_SECOND);
+        header(out, "hensaw_reload_seconds", "Time to page an evicted namespace back in", "summary");
+        summarySamples(out, "hensaw_reload_seconds", null, null, eviction.reloads(), NANOS_PER_SECOND);
+
+        Map<String, RpcMetrics.Method> methods = rpcMetrics.methods();
+        header(out, "hensaw_rpc_errors_total", "Calls that ended with a non-OK status", "counter");
+        methods.forEach((method, metrics) -> sample(out, "hensaw_rpc_errors_total", "method", method, null,
+                metrics.errors()));
+        header(out, "hensaw_rpc_latency_seconds", "Call latency", "summary");
+        methods.forEach((method, metrics) -> summarySamples(out, "hensaw_rpc_latency_seconds", "method", method,
+                metrics.latency(), NANOS_PER_SECOND));
+        return out.toString();
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, Map<String, VectorIndex> indexes,
+                              Function<VectorIndex, Number> value) {
+        header(out, name, help, "gauge");
+        indexes.forEach((namespace, index) -> sample(out, name, "namespace", namespace, null, value.apply(index)));
+    }
+
+    private static void counter(StringBuilder out, String name, String help, Map<String, VectorIndex> indexes,
+                                Function<VectorIndex, Number> value) {
+        header(out, name, help, "counter");
+        indexes.forEach((namespace, index) -> sample(out, name, "namespace", namespace, null, value.apply(index)));
+    }
+
+    private void cacheCounter(StringBuilder out, String name, String help, Map<String, VectorIndex> indexes,
+                              Function<QueryCache, Number> value) {
+        header(out, name, help, "counter");
+        for (String namespace : indexes.keySet()) {
+            QueryCache cache = registry.queryCache(namespace);
+            if (cache.enabled()) {
+                sample(out, name, "namespace", namespace, null, value.apply(cache));
+            }
+        }
+    }
+
+    private static void summary(StringBuilder out, String name, String help, Map<String, VectorIndex> indexes,
+                                Function<VectorIndex, Histogram> histogram, double divisor) {
+        header(out, name, help, "summary");
+        indexes.forEach((namespace, index) ->
+                summarySamples(out, name, "namespace", namespace, histogram.apply(index), divisor));
+    }
+
+    private static void summarySamples(StringBuilder out, String name, String label, String value,
+                                       Histogram histogram, double divisor) {
+        Histogram.Summary summary = histogram.summary();
+        sample(out, name, label, value, "0.5", summary.p50() / divisor);
+        sample(out, name, label, value, "0.9", summary.p90() / divisor);
+        sample(out, name, label, value, "0.99", summary.p99() / divisor);
+        sample(out, name + "_sum", label, value, null, histogram.sum() / divisor);
+        sample(out, name + "_count", label, value, null, summary.count());
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String label, String value, String quantile,
+                               Number sample) {
+        out.append(name);
+        if (label != null || quantile != null) {
+            out.append('{');
+            if (label != null) {
+                out.append(label).append("=\"").append(escape(value)).append('"');
+            }
+            if (quantile != null) {
+                out.append(label != null ? "," : "").append("quantile=\"").append(quantile).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(sample).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,46 @@
+package org.hnsw.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call latency (nanoseconds) and error counts per gRPC method.
+ */
+public final class RpcMetrics {
+    private final ConcurrentMap<String, Method> methods = new ConcurrentHashMap<>();
+
+    public void record(String method, long nanos, boolean failed) {
+        Method metrics = methods.computeIfAbsent(method, name -> new Method());
+        metrics.latency.record(nanos);
+        if (failed) {
+            metrics.errors.increment();
+        }
+    }
+
+    /**
+     * Methods that have been called at least once, sorted by name.
+     */
+    public Map<String, Method> methods() {
+        return new TreeMap<>(methods);
+    }
+
+    public static final class Method {
+        private final Histogram latency = new Histogram();
+        private final LongAdder errors = new LongAdder();
+
+        public Histogram latency() {
+            return latency;
+        }
+
+        public long calls() {
+            return latency.count();
+        }
+
+        public long errors() {
+            return errors.sum();
+        }
+    }
+}
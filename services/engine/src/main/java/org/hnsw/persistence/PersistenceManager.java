@@ -0,0 +1,243 @@
+package org.hnsw.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.store.ColdStorage;
+import org.hnsw.store.IndexOptions;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.hnsw.store.WriteJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Owns the on-disk state of the engine: one snapshot file per namespace plus a shared write-ahead log.
+ * Recovery loads every snapshot and replays the log entries written after it; periodic snapshots let the log
+ * be truncated so restarts stay fast.
+ *
+ * <p>Acts as the registry's journal: upserts and deletes go to the log, while a namespace replaced by an
+ * offline-built index is snapshotted synchronously since replaying its old log entries would be wrong.
+ *
+ * <p>Also serves as the registry's cold storage: an evicted namespace is simply its snapshot file, rewritten only
+ * if the log has moved past it, and is paged back in from that file.
+ */
+public final class PersistenceManager implements WriteJournal, ColdStorage, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PersistenceManager.class);
+    private static final int SNAPSHOT_MAGIC = 0x48534e50;
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private final Path snapshotDirectory;
+    private final WriteAheadLog wal;
+    private final NamespaceIndexRegistry registry;
+    private final DistanceFunction distanceFunction;
+    private final Duration snapshotInterval;
+    private final Map<String, Long> snapshotLsns = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PersistenceManager(Path dataDirectory, NamespaceIndexRegistry registry, DistanceFunction distanceFunction,
+                              boolean fsync, Duration snapshotInterval) throws IOException {
+        this.snapshotDirectory = Files.createDirectories(dataDirectory.resolve("snapshots"));
+        this.wal = WriteAheadLog.open(dataDirectory.resolve("wal"), fsync);
+        this.registry = registry;
+        this.distanceFunction = distanceFunction;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public void recover() throws IOException {
+        long started = System.nanoTime();
+        long maxSnapshotLsn = 0;
+        try (Stream<Path> files = Files.list(snapshotDirectory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SNAPSHOT_SUFFIX)).toList()) {
+                maxSnapshotLsn = Math.max(maxSnapshotLsn, loadSnapshot(path));
+            }
+        }
+        wal.advanceTo(maxSnapshotLsn);
+
+        long[] replayed = {0};
+        wal.replay(entry -> {
+            if (entry.lsn() <= snapshotLsns.getOrDefault(entry.namespace(), 0L)) {
+                return;
+            }
+            switch (entry.type()) {
+                case UPSERT -> registry.upsert(entry.namespace(), entry.options(), entry.records());
+                case DELETE -> registry.delete(entry.namespace(), entry.deletedIds());
+            }
+            replayed[0]++;
+        });
+        registry.setJournal(this);
+        LOGGER.info("Recovered {} namespaces and replayed {} log entries in {} ms",
+                snapshotLsns.size(), replayed[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public void start() {
+        long period = snapshotInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+        wal.appendUpsert(namespace, options, records);
+    }
+
+    @Override
+    public void appendDelete(String namespace, List<String> ids) {
+        wal.appendDelete(namespace, ids);
+    }
+
+    @Override
+    public void appendReplace(String namespace, VectorIndex index) {
+        try {
+            writeSnapshot(namespace, index);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to snapshot replaced namespace '" + namespace + "'", ex);
+        }
+    }
+
+    @Override
+    public void store(String namespace, VectorIndex index) throws IOException {
+        if (wal.lastLsn(namespace) > snapshotLsns.getOrDefault(namespace, 0L) || !Files.exists(snapshotPath(namespace))) {
+            writeSnapshot(namespace, index);
+        }
+    }
+
+    @Override
+    public VectorIndex load(String namespace) throws IOException {
+        return readSnapshot(snapshotPath(namespace)).index();
+    }
+
+    @Override
+    public void discard(String namespace) {
+    }
+
+    public void snapshotAll() throws IOException {
+        long truncateBefore = wal.lastLsn();
+        for (String namespace : registry.namespaces()) {
+            snapshot(namespace);
+            if (wal.lastLsn(namespace) > snapshotLsns.getOrDefault(namespace, 0L)) {
+                truncateBefore = Math.min(truncateBefore, snapshotLsns.getOrDefault(namespace, 0L));
+            }
+        }
+        wal.truncateUpTo(truncateBefore);
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshotAll();
+        wal.close();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshotAll();
+        } catch (IOException | RuntimeException ex) {
+            LOGGER.error("Periodic snapshot failed", ex);
+        }
+    }
+
+    /**
+     * Writes a namespace snapshot while its upserts are paused, so every log entry at or below the recorded LSN
+     * is contained in the snapshot. Searches keep running. Namespaces unchanged since their last snapshot are
+     * skipped.
+     */
+    private void snapshot(String namespace) throws IOException {
+        if (wal.lastLsn(namespace) <= snapshotLsns.getOrDefault(namespace, 0L)) {
+            return;
+        }
+        try {
+            registry.withWritesPaused(namespace, index -> {
+                try {
+                    writeSnapshot(namespace, index);
+                    return null;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    /**
+     * Writes and atomically installs the snapshot file of a namespace. Callers must hold the namespace's write
+     * gate.
+     */
+    private void writeSnapshot(String namespace, VectorIndex index) throws IOException {
+        Path target = snapshotPath(namespace);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long started = System.nanoTime();
+        long lsn = wal.lastLsn();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             SnapshotOutput out = new SnapshotOutput(channel)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(lsn);
+            out.writeString(namespace);
+            index.writeSnapshot(out);
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        snapshotLsns.put(namespace, lsn);
+        LOGGER.info("Snapshot of namespace '{}' at LSN {} written in {} ms",
+                namespace, lsn, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    private long loadSnapshot(Path path) throws IOException {
+        long started = System.nanoTime();
+        Snapshot snapshot = readSnapshot(path);
+        registry.restore(snapshot.namespace(), snapshot.index());
+        snapshotLsns.put(snapshot.namespace(), snapshot.lsn());
+        LOGGER.info("Loaded namespace '{}' ({} vectors) in {} ms", snapshot.namespace(), snapshot.index().size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return snapshot.lsn();
+    }
+
+    private Snapshot readSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            SnapshotInput in = new SnapshotInput(channel);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            long lsn = in.readLong();
+            String namespace = in.readString();
+            return new Snapshot(namespace, lsn, VectorIndex.readSnapshot(in, distanceFunction));
+        }
+    }
+
+    private Path snapshotPath(String namespace) {
+        return snapshotDirectory.resolve(URLEncoder.encode(namespace, StandardCharsets.UTF_8) + SNAPSHOT_SUFFIX);
+    }
+
+    private record Snapshot(String namespace, long lsn, VectorIndex index) {}
+}
@@ -0,0 +1,110 @@
+package org.hnsw.persistence;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a snapshot through a sliding memory-mapped window. Arrays are bulk-copied straight out of the mapping,
+ * so loading an index costs little more than the page-cache reads of its file.
+ */
+public final class SnapshotInput {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    public SnapshotInput(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        remap(0);
+    }
+
+    public byte readByte() throws IOException {
+        ensure(Byte.BYTES);
+        return window.get();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    public int readInt() throws IOException {
+        ensure(Integer.BYTES);
+        return window.getInt();
+    }
+
+    public long readLong() throws IOException {
+        ensure(Long.BYTES);
+        return window.getLong();
+    }
+
+    public float readFloat() throws IOException {
+        ensure(Float.BYTES);
+        return window.getFloat();
+    }
+
+    public String readString() throws IOException {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public void readBytes(byte[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(1);
+            int chunk = Math.min(length, window.remaining());
+            window.get(target, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public void readFloats(float[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(Float.BYTES);
+            int chunk = Math.min(length, window.remaining() / Float.BYTES);
+            window.asFloatBuffer().get(target, offset, chunk);
+            window.position(window.position() + chunk * Float.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    public void readInts(int[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensure(Integer.BYTES);
+            int chunk = Math.min(length, window.remaining() / Integer.BYTES);
+            window.asIntBuffer().get(target, offset, chunk);
+            window.position(window.position() + chunk * Integer.BYTES);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return;
+        }
+        long position = windowStart + window.position();
+        if (position + bytes > size) {
+            throw new IOException("Unexpected end of snapshot at offset " + position);
+        }
+        remap(position);
+    }
+
+    private void remap(long position) throws IOException {
+        long length = Math.min(WINDOW_SIZE, size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        windowStart = position;
+    }
+}
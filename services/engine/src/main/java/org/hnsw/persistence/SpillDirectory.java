@@ -0,0 +1,69 @@
+package org.hnsw.persistence;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+import org.hnsw.distance.DistanceFunction;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.store.ColdStorage;
+
+/**
+ * Cold storage for engines running without persistence: evicted namespaces are written in the snapshot layout to
+ * a scratch directory and read back through a memory mapping. Files only live while their namespace is evicted
+ * and are cleared on startup.
+ */
+public final class SpillDirectory implements ColdStorage {
+    private static final String SUFFIX = ".idx";
+
+    private final Path directory;
+    private final DistanceFunction distanceFunction;
+
+    public SpillDirectory(Path directory, DistanceFunction distanceFunction) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.distanceFunction = distanceFunction;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Override
+    public void store(String namespace, VectorIndex index) throws IOException {
+        Path path = path(namespace);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             SnapshotOutput out = new SnapshotOutput(channel)) {
+            index.writeSnapshot(out);
+            out.flush();
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(path);
+            throw ex;
+        }
+    }
+
+    @Override
+    public VectorIndex load(String namespace) throws IOException {
+        Path path = path(namespace);
+        VectorIndex index;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            index = VectorIndex.readSnapshot(new SnapshotInput(channel), distanceFunction);
+        }
+        Files.delete(path);
+        return index;
+    }
+
+    @Override
+    public void discard(String namespace) throws IOException {
+        Files.deleteIfExists(path(namespace));
+    }
+
+    private Path path(String namespace) {
+        return directory.resolve(URLEncoder.encode(namespace, StandardCharsets.UTF_8) + SUFFIX);
+    }
+}
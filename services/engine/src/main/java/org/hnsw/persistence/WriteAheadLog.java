@@ -0,0 +1,428 @@
+package org.hnsw.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import org.hnsw.VectorRecord;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.store.IndexOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of upsert and delete batches. Entries are framed as {@code length | crc32c | payload} and carry a
+ * monotonically increasing log sequence number (LSN). The log is split into segments named after the first
+ * LSN they contain so that segments fully covered by snapshots can be deleted.
+ *
+ * <p>With fsync on, appends return once their entry is on disk, but concurrent appends share the fsync: whichever
+ * waiting append gets there first forces everything written so far while the others keep writing, and each fsync
+ * covers the appends that queued up during the previous one.
+ */
+public final class WriteAheadLog implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+    private static final long SEGMENT_SIZE = 64L << 20;
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+    /** Upserts written before shard counts were journaled; they replay as unsharded. */
+    private static final byte LEGACY_UPSERT = 1;
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Map<String, Long> lastLsnByNamespace = new ConcurrentHashMap<>();
+    private final Object syncLock = new Object();
+    private FileChannel segment;
+    private long nextLsn = 1;
+    /** Highest LSN known to be on disk, guarded by {@link #syncLock}. */
+    private long syncedLsn;
+    private boolean syncing;
+    /** Number of fsyncs issued by appends, guarded by {@link #syncLock}. */
+    private long syncs;
+
+    public enum Type {
+        UPSERT(3),
+        DELETE(2);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        static Type fromCode(byte code) {
+            if (code == LEGACY_UPSERT) {
+                return UPSERT;
+            }
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalStateException("Unknown WAL entry type " + code);
+        }
+    }
+
+    /**
+     * One journaled batch: {@code records} for upserts, {@code deletedIds} for deletes.
+     */
+    public record Entry(long lsn, Type type, String namespace, IndexOptions options,
+                        List<VectorRecord> records, List<String> deletedIds) {
+    }
+
+    private WriteAheadLog(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+    }
+
+    public static WriteAheadLog open(Path directory, boolean fsync) throws IOException {
+        Files.createDirectories(directory);
+        WriteAheadLog wal = new WriteAheadLog(directory, fsync);
+        List<Path> segments = wal.segments();
+        if (segments.isEmpty()) {
+            wal.openSegment();
+            return wal;
+        }
+        Path last = segments.get(segments.size() - 1);
+        long[] lastLsn = {firstLsn(last) - 1};
+        long valid = scan(last, entry -> lastLsn[0] = entry.lsn());
+        wal.segment = FileChannel.open(last, StandardOpenOption.WRITE);
+        if (valid < wal.segment.size()) {
+            LOGGER.warn("Truncating torn WAL tail in {} at offset {}", last.getFileName(), valid);
+            wal.segment.truncate(valid);
+        }
+        wal.segment.position(valid);
+        wal.nextLsn = lastLsn[0] + 1;
+        return wal;
+    }
+
+    public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+        append(lsn -> new Entry(lsn, Type.UPSERT, namespace, options, records, List.of()));
+    }
+
+    public void appendDelete(String namespace, List<String> ids) {
+        append(lsn -> new Entry(lsn, Type.DELETE, namespace, null, List.of(), ids));
+    }
+
+    private void append(LongFunction<Entry> entry) {
+        try {
+            long lsn = write(entry);
+            if (fsync) {
+                awaitDurable(lsn);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to append to write-ahead log", ex);
+        }
+    }
+
+    private synchronized long write(LongFunction<Entry> entry) throws IOException {
+        if (segment.position() >= SEGMENT_SIZE) {
+            closeSegment();
+            openSegment();
+        }
+        long lsn = nextLsn;
+        Entry next = entry.apply(lsn);
+        ByteBuffer frame = encode(next);
+        while (frame.hasRemaining()) {
+            segment.write(frame);
+        }
+        nextLsn = lsn + 1;
+        lastLsnByNamespace.put(next.namespace(), lsn);
+        return lsn;
+    }
+
+    /**
+     * Returns once the entry at {@code lsn} is on disk, forcing the segment unless another append already is.
+     */
+    private void awaitDurable(long lsn) throws IOException {
+        synchronized (syncLock) {
+            while (syncing && syncedLsn < lsn) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the write-ahead log to sync");
+                }
+            }
+            if (syncedLsn >= lsn) {
+                return;
+            }
+            syncing = true;
+        }
+        long target;
+        FileChannel channel;
+        synchronized (this) {
+            target = nextLsn - 1;
+            channel = segment;
+        }
+        boolean synced = false;
+        try {
+            channel.force(false);
+            synced = true;
+        } catch (ClosedByInterruptException ex) {
+            throw ex;
+        } catch (ClosedChannelException ex) {
+            // Rotated away meanwhile; segments are forced before they are closed.
+            synced = true;
+        } finally {
+            synchronized (syncLock) {
+                syncing = false;
+                if (synced) {
+                    syncedLsn = Math.max(syncedLsn, target);
+                    syncs++;
+                }
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns how many fsyncs appends have issued so far; with concurrent appenders this stays below the number
+     * of appends.
+     */
+    long syncs() {
+        synchronized (syncLock) {
+            return syncs;
+        }
+    }
+
+    public synchronized long lastLsn() {
+        return nextLsn - 1;
+    }
+
+    public long lastLsn(String namespace) {
+        return lastLsnByNamespace.getOrDefault(namespace, 0L);
+    }
+
+    /**
+     * Makes sure new entries are numbered after {@code lsn}, for instance when snapshots outlived the log.
+     */
+    public synchronized void advanceTo(long lsn) throws IOException {
+        if (lsn < nextLsn) {
+            return;
+        }
+        nextLsn = lsn + 1;
+        closeSegment();
+        openSegment();
+    }
+
+    public void replay(Consumer<Entry> consumer) throws IOException {
+        for (Path path : segments()) {
+            long valid = scan(path, entry -> {
+                lastLsnByNamespace.merge(entry.namespace(), entry.lsn(), Math::max);
+                consumer.accept(entry);
+            });
+            if (valid < Files.size(path)) {
+                LOGGER.warn("Stopped WAL replay at corrupt entry in {} (offset {})", path.getFileName(), valid);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deletes every segment whose entries all have an LSN at or below {@code lsn}. The active segment is kept.
+     */
+    public synchronized void truncateUpTo(long lsn) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 > lsn) {
+                break;
+            }
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segment.force(true);
+        segment.close();
+    }
+
+    private void closeSegment() throws IOException {
+        if (fsync) {
+            segment.force(false);
+        }
+        segment.close();
+    }
+
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", nextLsn, SEGMENT_SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.position(segment.size());
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Decodes entries from a segment until the end of the file or the first torn or corrupt frame and returns
+     * the offset just past the last valid entry.
+     */
+    private static long scan(Path path, Consumer<Entry> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            CRC32C crc = new CRC32C();
+            int position = 0;
+            while (data.remaining() - position >= HEADER_BYTES) {
+                int length = data.getInt(position);
+                int checksum = data.getInt(position + Integer.BYTES);
+                int start = position + HEADER_BYTES;
+                if (length <= 0 || length > data.limit() - start) {
+                    break;
+                }
+                ByteBuffer payload = data.slice(start, length).order(ByteOrder.LITTLE_ENDIAN);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(decode(payload));
+                position = start + length;
+            }
+            return position;
+        }
+    }
+
+    private static ByteBuffer encode(Entry entry) {
+        byte[] namespace = entry.namespace().getBytes(StandardCharsets.UTF_8);
+        List<byte[]> strings = new ArrayList<>();
+        int size = Long.BYTES + 1 + Integer.BYTES + namespace.length + Integer.BYTES;
+        if (entry.type() == Type.UPSERT) {
+            size += 1 + Integer.BYTES * 3 + 1;
+            for (VectorRecord record : entry.records()) {
+                byte[] id = record.id().getBytes(StandardCharsets.UTF_8);
+                strings.add(id);
+                size += Integer.BYTES + id.length + Integer.BYTES + record.dimension() * Float.BYTES + Integer.BYTES;
+                for (Map.Entry<String, String> pair : record.metadata().entrySet()) {
+                    byte[] key = pair.getKey().getBytes(StandardCharsets.UTF_8);
+                    byte[] value = pair.getValue().getBytes(StandardCharsets.UTF_8);
+                    strings.add(key);
+                    strings.add(value);
+                    size += Integer.BYTES * 2 + key.length + value.length;
+                }
+            }
+        } else {
+            for (String id : entry.deletedIds()) {
+                byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+                strings.add(bytes);
+                size += Integer.BYTES + bytes.length;
+            }
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + size).order(ByteOrder.LITTLE_ENDIAN);
+        frame.position(HEADER_BYTES);
+        frame.putLong(entry.lsn());
+        frame.put(entry.type().code);
+        putBytes(frame, namespace);
+        int next = 0;
+        if (entry.type() == Type.UPSERT) {
+            QuantizationConfig quantization = entry.options().quantization();
+            frame.put((byte) quantization.mode().ordinal());
+            frame.putInt(quantization.trainingSize());
+            frame.putInt(quantization.pqSubspaces());
+            frame.put((byte) (quantization.keepFullVectors() ? 1 : 0));
+            frame.putInt(entry.options().shards());
+            frame.putInt(entry.records().size());
+            for (VectorRecord record : entry.records()) {
+                putBytes(frame, strings.get(next++));
+                frame.putInt(record.dimension());
+                frame.asFloatBuffer().put(record.values());
+                frame.position(frame.position() + record.dimension() * Float.BYTES);
+                frame.putInt(record.metadata().size());
+                for (int i = 0; i < record.metadata().size(); i++) {
+                    putBytes(frame, strings.get(next++));
+                    putBytes(frame, strings.get(next++));
+                }
+            }
+        } else {
+            frame.putInt(strings.size());
+            for (byte[] id : strings) {
+                putBytes(frame, id);
+            }
+        }
+
+        CRC32C crc = new CRC32C();
+        crc.update(frame.array(), HEADER_BYTES, size);
+        frame.putInt(0, size);
+        frame.putInt(Integer.BYTES, (int) crc.getValue());
+        return frame.flip();
+    }
+
+    private static Entry decode(ByteBuffer payload) {
+        long lsn = payload.getLong();
+        byte code = payload.get();
+        Type type = Type.fromCode(code);
+        String namespace = getString(payload);
+        if (type == Type.DELETE) {
+            int count = payload.getInt();
+            List<String> ids = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ids.add(getString(payload));
+            }
+            return new Entry(lsn, type, namespace, null, List.of(), ids);
+        }
+        QuantizationConfig quantization = new QuantizationConfig(
+                QuantizationConfig.Mode.values()[payload.get()],
+                payload.getInt(),
+                payload.getInt(),
+                payload.get() != 0);
+        int shards = code == LEGACY_UPSERT ? 1 : payload.getInt();
+        int count = payload.getInt();
+        List<VectorRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = getString(payload);
+            float[] values = new float[payload.getInt()];
+            payload.asFloatBuffer().get(values);
+            payload.position(payload.position() + values.length * Float.BYTES);
+            int pairs = payload.getInt();
+            Map<String, String> metadata = new HashMap<>(pairs);
+            for (int p = 0; p < pairs; p++) {
+                metadata.put(getString(payload), getString(payload));
+            }
+            records.add(new VectorRecord(id, values, metadata));
+        }
+        return new Entry(lsn, type, namespace, new IndexOptions(quantization, shards), records, List.of());
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
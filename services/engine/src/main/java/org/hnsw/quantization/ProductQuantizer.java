@@ -0,0 +1,211 @@
+package org.hnsw.quantization;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+/**
+ * Product quantizer: the vector is split into {@code subspaces} contiguous slices and each slice is replaced by
+ * the index of its nearest k-means centroid. Queries build a per-subspace lookup table once, so scoring a
+ * stored vector costs one table read per code byte (asymmetric distance computation).
+ */
+public final class ProductQuantizer implements VectorCodec {
+    private static final int CENTROIDS = 256;
+    private static final int ITERATIONS = 12;
+    private static final int TARGET_SUBVECTOR_DIMENSION = 8;
+
+    private final int subspaces;
+    private final int subDimension;
+    private final DistanceMetric metric;
+    private final long seed;
+    private float[][] codebooks;
+    private int centroids;
+
+    public ProductQuantizer(int dimension, int subspaces, DistanceMetric metric) {
+        this(dimension, subspaces, metric, 42L);
+    }
+
+    ProductQuantizer(int dimension, int subspaces, DistanceMetric metric, long seed) {
+        int resolved = subspaces > 0 ? subspaces : defaultSubspaces(dimension);
+        if (dimension % resolved != 0) {
+            throw new IllegalArgumentException("PQ subspaces (" + resolved + ") must divide dimension " + dimension);
+        }
+        this.subspaces = resolved;
+        this.subDimension = dimension / resolved;
+        this.metric = metric;
+        this.seed = seed;
+    }
+
+    static int defaultSubspaces(int dimension) {
+        int target = Math.max(1, dimension / TARGET_SUBVECTOR_DIMENSION);
+        for (int delta = 0; delta < dimension; delta++) {
+            if (target - delta >= 1 && dimension % (target - delta) == 0) {
+                return target - delta;
+            }
+            if (dimension % (target + delta) == 0) {
+                return target + delta;
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void train(List<float[]> sample) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Cannot train product quantizer without vectors");
+        }
+        int k = Math.min(CENTROIDS, sample.size());
+        float[][] trained = new float[subspaces][];
+        IntStream.range(0, subspaces).parallel()
+                .forEach(subspace -> trained[subspace] = kMeans(sample, subspace, k));
+        this.centroids = k;
+        this.codebooks = trained;
+    }
+
+    private float[] kMeans(List<float[]> sample, int subspace, int k) {
+        int from = subspace * subDimension;
+        int n = sample.size();
+        Random random = new Random(seed + subspace);
+        float[] centers = new float[k * subDimension];
+        int[] order = IntStream.range(0, n).toArray();
+        for (int i = 0; i < k; i++) {
+            int pick = i + random.nextInt(n - i);
+            int swap = order[i];
+            order[i] = order[pick];
+            order[pick] = swap;
+            System.arraycopy(sample.get(order[i]), from, centers, i * subDimension, subDimension);
+        }
+
+        int[] assignment = new int[n];
+        double[] sums = new double[k * subDimension];
+        int[] counts = new int[k];
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            boolean moved = false;
+            for (int i = 0; i < n; i++) {
+                int nearest = nearestCentroid(centers, k, sample.get(i), from);
+                if (iteration == 0 || nearest != assignment[i]) {
+                    assignment[i] = nearest;
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                break;
+            }
+            Arrays.fill(sums, 0.0);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                float[] vector = sample.get(i);
+                int base = assignment[i] * subDimension;
+                counts[assignment[i]]++;
+                for (int d = 0; d < subDimension; d++) {
+                    sums[base + d] += vector[from + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    System.arraycopy(sample.get(random.nextInt(n)), from, centers, c * subDimension, subDimension);
+                    continue;
+                }
+                for (int d = 0; d < subDimension; d++) {
+                    centers[c * subDimension + d] = (float) (sums[c * subDimension + d] / counts[c]);
+                }
+            }
+        }
+        return centers;
+    }
+
+    private int nearestCentroid(float[] centers, int k, float[] vector, int from) {
+        int nearest = 0;
+        float best = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < k; c++) {
+            int base = c * subDimension;
+            float dist = 0f;
+            for (int d = 0; d < subDimension; d++) {
+                float diff = vector[from + d] - centers[base + d];
+                dist += diff * diff;
+            }
+            if (dist < best) {
+                best = dist;
+                nearest = c;
+            }
+        }
+        return nearest;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            int nearest = nearestCentroid(codebooks[subspace], centroids, vector, subspace * subDimension);
+            codes[offset + subspace] = (byte) nearest;
+        }
+    }
+
+    @Override
+    public void decode(byte[] codes, int offset, float[] target) {
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            int centroid = codes[offset + subspace] & 0xFF;
+            System.arraycopy(codebooks[subspace], centroid * subDimension, target, subspace * subDimension, subDimension);
+        }
+    }
+
+    @Override
+    public CodeScorer scorer(float[] query) {
+        int k = centroids;
+        float[] table = new float[subspaces * k];
+        boolean dot = metric != DistanceMetric.L2;
+        for (int subspace = 0; subspace < subspaces; subspace++) {
+            float[] centers = codebooks[subspace];
+            int from = subspace * subDimension;
+            for (int c = 0; c < k; c++) {
+                int base = c * subDimension;
+                float value = 0f;
+                for (int d = 0; d < subDimension; d++) {
+                    if (dot) {
+                        value += query[from + d] * centers[base + d];
+                    } else {
+                        float diff = query[from + d] - centers[base + d];
+                        value += diff * diff;
+                    }
+                }
+                table[subspace * k + c] = value;
+            }
+        }
+        int count = subspaces;
+        return (codes, offset) -> {
+            float sum = 0f;
+            for (int subspace = 0; subspace < count; subspace++) {
+                sum += table[subspace * k + (codes[offset + subspace] & 0xFF)];
+            }
+            return dot ? 1.0 - sum : sum;
+        };
+    }
+
+    @Override
+    public void write(SnapshotOutput out) throws IOException {
+        out.writeInt(centroids);
+        for (float[] codebook : codebooks) {
+            out.writeFloats(codebook, 0, codebook.length);
+        }
+    }
+
+    @Override
+    public void read(SnapshotInput in) throws IOException {
+        int k = in.readInt();
+        float[][] loaded = new float[subspaces][k * subDimension];
+        for (float[] codebook : loaded) {
+            in.readFloats(codebook, 0, codebook.length);
+        }
+        this.centroids = k;
+        this.codebooks = loaded;
+    }
+}
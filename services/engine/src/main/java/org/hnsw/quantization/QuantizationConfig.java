@@ -0,0 +1,62 @@
+package org.hnsw.quantization;
+
+import java.util.Locale;
+import org.hnsw.distance.DistanceMetric;
+
+/**
+ * Per-namespace quantization settings. {@code pqSubspaces} is only used by {@link Mode#PQ}; zero picks a
+ * divisor of the dimension giving roughly eight dimensions per subspace. When {@code keepFullVectors} is
+ * false, the float vectors are dropped once the codec is trained, results carry decoded approximations and
+ * no rerank happens.
+ */
+public record QuantizationConfig(Mode mode, int trainingSize, int pqSubspaces, boolean keepFullVectors) {
+
+    public static final int DEFAULT_TRAINING_SIZE = 10_000;
+
+    public enum Mode {
+        NONE,
+        INT8,
+        PQ;
+
+        public static Mode parse(String raw) {
+            return switch (raw.trim().toLowerCase(Locale.ROOT)) {
+                case "none" -> NONE;
+                case "int8", "sq8" -> INT8;
+                case "pq" -> PQ;
+                default -> throw new IllegalArgumentException("Unknown quantization mode: " + raw);
+            };
+        }
+    }
+
+    public QuantizationConfig {
+        if (mode == null) {
+            throw new IllegalArgumentException("Quantization mode must be provided");
+        }
+        if (mode != Mode.NONE && trainingSize <= 0) {
+            throw new IllegalArgumentException("Quantization training size must be positive");
+        }
+        if (pqSubspaces < 0) {
+            throw new IllegalArgumentException("PQ subspaces must not be negative");
+        }
+    }
+
+    public QuantizationConfig(Mode mode, int trainingSize) {
+        this(mode, trainingSize, 0, true);
+    }
+
+    public static QuantizationConfig none() {
+        return new QuantizationConfig(Mode.NONE, DEFAULT_TRAINING_SIZE);
+    }
+
+    public boolean enabled() {
+        return mode != Mode.NONE;
+    }
+
+    public VectorCodec createCodec(int dimension, DistanceMetric metric) {
+        return switch (mode) {
+            case NONE -> throw new IllegalStateException("Quantization is disabled");
+            case INT8 -> new ScalarQuantizer(dimension, metric);
+            case PQ -> new ProductQuantizer(dimension, pqSubspaces, metric);
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package org.hnsw.quantization;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.hnsw.distance.DistanceMetric;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+/**
+ * 8-bit scalar quantizer with per-dimension min/max calibration. Queries stay in float and are folded into
+ * per-dimension weights, so scoring a stored vector reads one byte per dimension.
+ */
+public final class ScalarQuantizer implements VectorCodec {
+    private static final int LEVELS = 255;
+
+    private final int dimension;
+    private final DistanceMetric metric;
+    private float[] min;
+    private float[] step;
+
+    public ScalarQuantizer(int dimension, DistanceMetric metric) {
+        this.dimension = dimension;
+        this.metric = metric;
+    }
+
+    @Override
+    public int codeSize() {
+        return dimension;
+    }
+
+    @Override
+    public void train(List<float[]> sample) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("Cannot calibrate quantizer without vectors");
+        }
+        float[] lower = new float[dimension];
+        float[] upper = new float[dimension];
+        Arrays.fill(lower, Float.POSITIVE_INFINITY);
+        Arrays.fill(upper, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int i = 0; i < dimension; i++) {
+                lower[i] = Math.min(lower[i], vector[i]);
+                upper[i] = Math.max(upper[i], vector[i]);
+            }
+        }
+        float[] steps = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            float range = upper[i] - lower[i];
+            steps[i] = range > 0f ? range / LEVELS : 1f;
+        }
+        this.min = lower;
+        this.step = steps;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] codes, int offset) {
+        for (int i = 0; i < dimension; i++) {
+            int code = Math.round((vector[i] - min[i]) / step[i]);
+            codes[offset + i] = (byte) Math.max(0, Math.min(LEVELS, code));
+        }
+    }
+
+    @Override
+    public void decode(byte[] codes, int offset, float[] target) {
+        for (int i = 0; i < dimension; i++) {
+            target[i] = min[i] + step[i] * (codes[offset + i] & 0xFF);
+        }
+    }
+
+    @Override
+    public CodeScorer scorer(float[] query) {
+        return switch (metric) {
+            case COSINE, DOT_PRODUCT -> dotScorer(query);
+            case L2 -> squareDistanceScorer(query);
+        };
+    }
+
+    @Override
+    public void write(SnapshotOutput out) throws IOException {
+        out.writeFloats(min, 0, dimension);
+        out.writeFloats(step, 0, dimension);
+    }
+
+    @Override
+    public void read(SnapshotInput in) throws IOException {
+        float[] lower = new float[dimension];
+        float[] steps = new float[dimension];
+        in.readFloats(lower, 0, dimension);
+        in.readFloats(steps, 0, dimension);
+        this.min = lower;
+        this.step = steps;
+    }
+
+    private CodeScorer dotScorer(float[] query) {
+        float[] weights = new float[dimension];
+        float bias = 0f;
+        for (int i = 0; i < dimension; i++) {
+            weights[i] = query[i] * step[i];
+            bias += query[i] * min[i];
+        }
+        float constant = bias;
+        return (codes, offset) -> {
+            float dot = constant;
+            for (int i = 0; i < dimension; i++) {
+                dot += weights[i] * (codes[offset + i] & 0xFF);
+            }
+            return 1.0 - dot;
+        };
+    }
+
+    private CodeScorer squareDistanceScorer(float[] query) {
+        float[] residual = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            residual[i] = query[i] - min[i];
+        }
+        float[] steps = step;
+        return (codes, offset) -> {
+            float sum = 0f;
+            for (int i = 0; i < dimension; i++) {
+                float diff = residual[i] - steps[i] * (codes[offset + i] & 0xFF);
+                sum += diff * diff;
+            }
+            return sum;
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package org.hnsw.quantization;
+
+import java.io.IOException;
+import java.util.List;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+
+public interface VectorCodec {
+    int codeSize();
+
+    void train(List<float[]> sample);
+
+    void encode(float[] vector, byte[] codes, int offset);
+
+    void decode(byte[] codes, int offset, float[] target);
+
+    CodeScorer scorer(float[] query);
+
+    void write(SnapshotOutput out) throws IOException;
+
+    void read(SnapshotInput in) throws IOException;
+
+    interface CodeScorer {
+        double distance(byte[] codes, int offset);
+    }
+}
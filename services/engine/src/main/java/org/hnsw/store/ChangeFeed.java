@@ -0,0 +1,245 @@
+package org.hnsw.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.VectorRecord;
+import org.hnsw.hnsw.VectorIndex;
+
+/**
+ * Ordered feed of the writes applied to each namespace, for {@code Subscribe} streams. Wraps the registry's
+ * journal: every journaled upsert and delete gets the next sequence number of its namespace. Changes are only kept
+ * in memory while the namespace has a subscriber, or did within the last {@value #DETACHED_RETENTION_MILLIS} ms
+ * so a reconnecting one can resume, and only until they outgrow the retention bound. A replaced or evicted
+ * namespace drops its retained changes, so subscribers behind it start over from a snapshot, as do subscribers
+ * that fell out of retention.
+ *
+ * <p>Sequence numbers only mean something within one {@link #epoch}, which is new every time the engine starts.
+ */
+public final class ChangeFeed implements WriteJournal {
+    private static final int RECORD_BYTES = 96;
+    private static final int ID_BYTES = 48;
+    private static final long DETACHED_RETENTION_MILLIS = 60_000;
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    /**
+     * @param timestampMillis wall-clock time the change was journaled
+     */
+    public record Change(long sequence, long timestampMillis, Type type, List<VectorRecord> records,
+                         List<String> ids) {
+        /**
+         * Approximate memory held by the change, used for retention and to size subscription events.
+         */
+        public long bytes() {
+            long bytes = 0;
+            for (VectorRecord record : records) {
+                bytes += RECORD_BYTES + (long) record.values().length * Float.BYTES + 2L * record.id().length();
+            }
+            for (String id : ids) {
+                bytes += ID_BYTES + 2L * id.length();
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Outcome of a {@link #read}: either the changes following the reader's position, or {@code resync} if they
+     * are no longer retained. Head is the namespace's latest sequence and its time.
+     */
+    public record Read(boolean resync, List<Change> changes, long head, long headTimestampMillis) {
+    }
+
+    /**
+     * A namespace's latest sequence and the time it was written.
+     */
+    public record Position(long sequence, long timestampMillis) {
+    }
+
+    private final WriteJournal delegate;
+    private final long retentionBytes;
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final ConcurrentMap<String, Log> logs = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param delegate       journal that still receives every write, such as the write-ahead log
+     * @param retentionBytes approximate bound on the changes kept per subscribed namespace
+     */
+    public ChangeFeed(WriteJournal delegate, long retentionBytes) {
+        if (retentionBytes <= 0) {
+            throw new IllegalArgumentException("Change feed retention must be positive");
+        }
+        this.delegate = delegate;
+        this.retentionBytes = retentionBytes;
+    }
+
+    public long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Wakes every waiting reader so subscriptions can end at shutdown.
+     */
+    public void close() {
+        closed = true;
+        for (Log log : logs.values()) {
+            synchronized (log) {
+                log.notifyAll();
+            }
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+        delegate.appendUpsert(namespace, options, records);
+        log(namespace).append(Type.UPSERT, List.copyOf(records), List.of());
+    }
+
+    @Override
+    public void appendDelete(String namespace, List<String> ids) {
+        delegate.appendDelete(namespace, ids);
+        log(namespace).append(Type.DELETE, List.of(), List.copyOf(ids));
+    }
+
+    @Override
+    public void appendReplace(String namespace, VectorIndex index) {
+        delegate.appendReplace(namespace, index);
+        log(namespace).reset();
+    }
+
+    @Override
+    public long memoryBytes(String namespace) {
+        Log log = logs.get(namespace);
+        if (log == null) {
+            return 0;
+        }
+        synchronized (log) {
+            return log.bytes;
+        }
+    }
+
+    @Override
+    public void release(String namespace) {
+        Log log = logs.get(namespace);
+        if (log != null) {
+            log.drop();
+        }
+    }
+
+    /**
+     * Keeps the namespace's changes from now on, until the matching {@link #removeSubscriber}.
+     */
+    public void addSubscriber(String namespace) {
+        Log log = log(namespace);
+        synchronized (log) {
+            log.subscribers++;
+        }
+    }
+
+    public void removeSubscriber(String namespace) {
+        Log log = log(namespace);
+        synchronized (log) {
+            log.subscribers--;
+            log.detached = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Latest position of a namespace. Taken with the namespace's writes paused, it is the position a snapshot of
+     * the namespace corresponds to.
+     */
+    public Position head(String namespace) {
+        Log log = log(namespace);
+        synchronized (log) {
+            return new Position(log.head, log.headTimestamp);
+        }
+    }
+
+    /**
+     * Returns up to {@code maxChanges} changes after sequence {@code after}, waiting up to {@code timeoutMillis}
+     * for one if there are none yet or the feed is closed.
+     */
+    public Read read(String namespace, long after, int maxChanges, long timeoutMillis) throws InterruptedException {
+        Log log = log(namespace);
+        synchronized (log) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (long wait = timeoutMillis; log.head == after && wait > 0 && !closed;
+                 wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) {
+                log.wait(wait);
+            }
+            if (after < log.floor || after > log.head) {
+                return new Read(true, List.of(), log.head, log.headTimestamp);
+            }
+            int from = log.start + (int) (after - log.floor);
+            int to = Math.min(log.changes.size(), from + maxChanges);
+            return new Read(false, List.copyOf(log.changes.subList(from, to)), log.head, log.headTimestamp);
+        }
+    }
+
+    private Log log(String namespace) {
+        return logs.computeIfAbsent(namespace, ns -> new Log());
+    }
+
+    /**
+     * Retained changes of one namespace: {@code changes[start + i]} has sequence {@code floor + 1 + i}.
+     */
+    private final class Log {
+        private final List<Change> changes = new ArrayList<>();
+        private int start;
+        private long floor;
+        private long head;
+        private long headTimestamp;
+        private long bytes;
+        private int subscribers;
+        private long detached;
+
+        synchronized void append(Type type, List<VectorRecord> records, List<String> ids) {
+            Change change = new Change(head + 1, System.currentTimeMillis(), type, records, ids);
+            head = change.sequence();
+            headTimestamp = change.timestampMillis();
+            if (subscribers == 0 && change.timestampMillis() - detached > DETACHED_RETENTION_MILLIS) {
+                drop();
+                return;
+            }
+            changes.add(change);
+            bytes += change.bytes();
+            while (bytes > retentionBytes && start < changes.size()) {
+                bytes -= changes.get(start++).bytes();
+                floor++;
+            }
+            if (start > changes.size() / 2) {
+                changes.subList(0, start).clear();
+                start = 0;
+            }
+            notifyAll();
+        }
+
+        synchronized void reset() {
+            head++;
+            headTimestamp = System.currentTimeMillis();
+            drop();
+        }
+
+        /**
+         * Forgets every retained change, so readers behind the head resync.
+         */
+        synchronized void drop() {
+            changes.clear();
+            start = 0;
+            floor = head;
+            bytes = 0;
+            notifyAll();
+        }
+    }
+}
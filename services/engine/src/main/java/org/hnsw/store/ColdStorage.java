@@ -0,0 +1,22 @@
+package org.hnsw.store;
+
+import java.io.IOException;
+import org.hnsw.hnsw.VectorIndex;
+
+/**
+ * Where the registry parks namespaces evicted from memory.
+ */
+public interface ColdStorage {
+
+    /**
+     * Writes a copy of {@code index} that {@link #load} can restore. Called with the namespace's writes paused.
+     */
+    void store(String namespace, VectorIndex index) throws IOException;
+
+    VectorIndex load(String namespace) throws IOException;
+
+    /**
+     * Forgets the stored copy of a namespace that was replaced while evicted.
+     */
+    void discard(String namespace) throws IOException;
+}
@@ -0,0 +1,25 @@
+package org.hnsw.store;
+
+import org.hnsw.quantization.QuantizationConfig;
+
+/**
+ * Settings a namespace is created with. They are journaled with every upsert so that replay recreates the
+ * namespace the same way, and ignored once the namespace exists.
+ */
+public record IndexOptions(QuantizationConfig quantization, int shards) {
+
+    public static final int MAX_SHARDS = 64;
+
+    public IndexOptions {
+        if (quantization == null) {
+            throw new IllegalArgumentException("Quantization must be provided");
+        }
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Shard count must be between 1 and " + MAX_SHARDS);
+        }
+    }
+
+    public static IndexOptions of(QuantizationConfig quantization) {
+        return new IndexOptions(quantization, 1);
+    }
+}
@@ -0,0 +1,48 @@
+package org.hnsw.store;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that keeps the resident namespaces within the registry's memory budget. Namespaces used
+ * within the last check interval are never evicted.
+ */
+public final class NamespaceEvictor implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceEvictor.class);
+
+    private final NamespaceIndexRegistry registry;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "namespace-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public NamespaceEvictor(NamespaceIndexRegistry registry, Duration interval) {
+        this.registry = registry;
+        this.interval = interval;
+    }
+
+    public void start() {
+        long period = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::enforce, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void enforce() {
+        try {
+            registry.enforceMemoryBudget(interval.toMillis());
+        } catch (RuntimeException ex) {
+            LOGGER.error("Namespace eviction failed", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
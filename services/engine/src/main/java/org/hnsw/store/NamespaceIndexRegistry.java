@@ -1,35 +1,93 @@
 package org.hnsw.store;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import org.hnsw.VectorRecord;
 import org.hnsw.distance.CosineDistance;
 import org.hnsw.distance.DistanceFunction;
 import org.hnsw.hnsw.HnswIndex;
+import org.hnsw.hnsw.ShardedIndex;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.metrics.EvictionMetrics;
+import org.hnsw.quantization.QuantizationConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Namespaces by name. With a memory budget set, the least recently used namespaces are moved to
+ * {@link ColdStorage} when the resident indexes outgrow it and are paged back in by the next {@link #get}.
+ */
 public final class NamespaceIndexRegistry {
-    private final ConcurrentMap<String, HnswIndex> indexes = new ConcurrentHashMap<>();
+    private static final Logger LOGGER = LoggerFactory.getLogger(NamespaceIndexRegistry.class);
+    private static final int ORDER_LOCK_STRIPES = 256;
+
+    private final ConcurrentMap<String, VectorIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ReadWriteLock> writeGates = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> lastAccess = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> evicted = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, QueryCache> queryCaches = new ConcurrentHashMap<>();
+    private final EvictionMetrics evictionMetrics = new EvictionMetrics();
+    private final ReentrantLock[] orderLocks = new ReentrantLock[ORDER_LOCK_STRIPES];
     private final int m;
     private final int efConstruction;
     private final int efSearch;
     private final DistanceFunction distanceFunction;
+    private final IndexOptions defaultOptions;
+    private volatile WriteJournal journal = WriteJournal.NONE;
+    private volatile ColdStorage coldStorage;
+    private volatile long memoryBudget;
+    private volatile int queryCacheEntries;
+    private volatile QueryCache.Budget queryCacheBudget = new QueryCache.Budget(0);
 
     public NamespaceIndexRegistry(int m, int efConstruction, int efSearch) {
         this(m, efConstruction, efSearch, new CosineDistance());
     }
 
     public NamespaceIndexRegistry(int m, int efConstruction, int efSearch, DistanceFunction distanceFunction) {
+        this(m, efConstruction, efSearch, distanceFunction, IndexOptions.of(QuantizationConfig.none()));
+    }
+
+    public NamespaceIndexRegistry(int m, int efConstruction, int efSearch, DistanceFunction distanceFunction,
+                                  IndexOptions defaultOptions) {
         this.m = m;
         this.efConstruction = efConstruction;
         this.efSearch = efSearch;
         this.distanceFunction = distanceFunction;
+        this.defaultOptions = defaultOptions;
+        for (int i = 0; i < ORDER_LOCK_STRIPES; i++) {
+            orderLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public VectorIndex getOrCreate(String namespace, int dimension) {
+        return getOrCreate(namespace, dimension, defaultOptions);
     }
 
-    public HnswIndex getOrCreate(String namespace, int dimension) {
+    public VectorIndex getOrCreate(String namespace, int dimension, IndexOptions options) {
+        VectorIndex existing = get(namespace);
+        if (existing != null && existing.getDimension() == dimension) {
+            return existing;
+        }
+        touch(namespace);
         return indexes.compute(namespace, (ns, index) -> {
             if (index == null) {
-                return new HnswIndex(dimension, m, efConstruction, efSearch, distanceFunction);
+                return newIndex(dimension, options);
             }
             if (index.getDimension() != dimension) {
                 throw new IllegalArgumentException("Namespace '" + namespace + "' expects vectors with dimension " + index.getDimension());
@@ -38,12 +96,404 @@ public final class NamespaceIndexRegistry {
         });
     }
 
-    public HnswIndex get(String namespace) {
+    /**
+     * Creates an index with this registry's parameters without registering it, for building offline and
+     * {@link #publish publishing} later.
+     */
+    public VectorIndex newIndex(int dimension, IndexOptions options) {
+        return options.shards() > 1
+                ? new ShardedIndex(options.shards(), dimension, m, efConstruction, efSearch, distanceFunction,
+                        options.quantization())
+                : new HnswIndex(dimension, m, efConstruction, efSearch, distanceFunction, options.quantization());
+    }
+
+    /**
+     * Atomically replaces a namespace with an index built offline. Upserts and deletes to the namespace wait
+     * until the replacement is journaled; searches switch over on their next lookup.
+     */
+    public void publish(String namespace, VectorIndex index) {
+        ReadWriteLock gate = writeGate(namespace);
+        gate.writeLock().lock();
+        try {
+            journal.appendReplace(namespace, index);
+            indexes.put(namespace, index);
+            dropQueryCache(namespace);
+            if (evicted.remove(namespace) != null) {
+                coldStorage.discard(namespace);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            gate.writeLock().unlock();
+        }
+        touch(namespace);
+    }
+
+    /**
+     * Returns the namespace's index, reloading it from cold storage if it was evicted, or {@code null} if the
+     * namespace does not exist.
+     */
+    public VectorIndex get(String namespace) {
+        VectorIndex index = indexes.get(namespace);
+        if (index == null && evicted.containsKey(namespace)) {
+            index = reload(namespace);
+        }
+        if (index != null) {
+            touch(namespace);
+        }
+        return index;
+    }
+
+    /**
+     * Whether the namespace exists, resident or evicted, without reloading it or counting as a use.
+     */
+    public boolean contains(String namespace) {
+        return indexes.containsKey(namespace) || evicted.containsKey(namespace);
+    }
+
+    /**
+     * Returns the index only if it is resident, without reloading it or counting as a use.
+     */
+    public VectorIndex peek(String namespace) {
         return indexes.get(namespace);
     }
 
+    public void setJournal(WriteJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Validates, journals and applies a batch of upserts to one namespace. Journaling and applying happen under
+     * the namespace's write gate so that {@link #withWritesPaused} observes every journaled batch as applied, and
+     * under the {@link #lockOrder order locks} of the batch's ids so that writes to the same id reach the index in
+     * journal order.
+     */
+    public int upsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        int dimension = records.get(0).dimension();
+        for (VectorRecord record : records) {
+            if (record.dimension() != dimension) {
+                throw new IllegalArgumentException("All vectors must match dimension " + dimension);
+            }
+        }
+        ReadWriteLock gate = writeGate(namespace);
+        while (true) {
+            VectorIndex index = getOrCreate(namespace, dimension, options);
+            gate.readLock().lock();
+            try {
+                if (indexes.get(namespace) != index) {
+                    continue;
+                }
+                int[] stripes = lockOrder(namespace, records.stream().map(VectorRecord::id).toList());
+                try {
+                    journal.appendUpsert(namespace, options, records);
+                    index.upsertAll(records);
+                } finally {
+                    unlockOrder(stripes);
+                }
+                return records.size();
+            } finally {
+                gate.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Tombstones the given ids in a namespace and returns how many of them existed. Returns 0 for an unknown
+     * namespace.
+     */
+    public int delete(String namespace, List<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        ReadWriteLock gate = writeGate(namespace);
+        while (true) {
+            VectorIndex index = get(namespace);
+            if (index == null) {
+                return 0;
+            }
+            gate.readLock().lock();
+            try {
+                if (indexes.get(namespace) != index) {
+                    continue;
+                }
+                int[] stripes = lockOrder(namespace, ids);
+                try {
+                    journal.appendDelete(namespace, ids);
+                    int deleted = 0;
+                    for (String id : ids) {
+                        if (index.delete(id)) {
+                            deleted++;
+                        }
+                    }
+                    return deleted;
+                } finally {
+                    unlockOrder(stripes);
+                }
+            } finally {
+                gate.readLock().unlock();
+            }
+        }
+    }
+
+    public <T> T withWritesPaused(String namespace, Function<VectorIndex, T> action) {
+        ReadWriteLock gate = writeGate(namespace);
+        gate.writeLock().lock();
+        try {
+            VectorIndex index = indexes.get(namespace);
+            return index == null ? null : action.apply(index);
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces a namespace with a {@link VectorIndex#reordered reordered} copy and snapshots it through the journal.
+     * Upserts and deletes wait until the copy is in place; searches keep running on the old index until their next
+     * lookup.
+     *
+     * @return the new index, or {@code null} if the namespace does not exist
+     */
+    public VectorIndex optimize(String namespace) {
+        if (get(namespace) == null) {
+            return null;
+        }
+        return withWritesPaused(namespace, index -> {
+            VectorIndex reordered = index.reordered();
+            journal.appendReplace(namespace, reordered);
+            indexes.put(namespace, reordered);
+            dropQueryCache(namespace);
+            return reordered;
+        });
+    }
+
+    public void restore(String namespace, VectorIndex index) {
+        indexes.put(namespace, index);
+        dropQueryCache(namespace);
+    }
+
+    /**
+     * Gives every namespace a {@link QueryCache} of up to {@code maxEntries} results, all of them together
+     * bounded by {@code maxBytes}. Zero for either disables caching.
+     */
+    public void setQueryCache(int maxEntries, long maxBytes) {
+        this.queryCacheEntries = maxEntries;
+        this.queryCacheBudget = new QueryCache.Budget(maxBytes);
+        for (String namespace : List.copyOf(queryCaches.keySet())) {
+            dropQueryCache(namespace);
+        }
+    }
+
+    /**
+     * The namespace's result cache, or {@link QueryCache#DISABLED} if caching is off.
+     */
+    public QueryCache queryCache(String namespace) {
+        QueryCache.Budget budget = queryCacheBudget;
+        if (queryCacheEntries <= 0 || budget.maxBytes() <= 0) {
+            return QueryCache.DISABLED;
+        }
+        return queryCaches.computeIfAbsent(namespace, ns -> new QueryCache(queryCacheEntries, budget));
+    }
+
+    /**
+     * Names of the resident namespaces.
+     */
+    public Set<String> namespaces() {
+        return Set.copyOf(indexes.keySet());
+    }
+
+    /**
+     * Enables eviction: once the resident indexes hold more than {@code budgetBytes}, {@link #enforceMemoryBudget}
+     * moves the least recently used ones to {@code storage}.
+     */
+    public void setMemoryBudget(ColdStorage storage, long budgetBytes) {
+        this.coldStorage = storage;
+        this.memoryBudget = budgetBytes;
+    }
+
+    public long memoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Memory of the resident namespaces: their indexes, cached results and what the journal keeps in memory for
+     * them.
+     */
+    public long residentBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, VectorIndex> entry : indexes.entrySet()) {
+            bytes += memoryBytes(entry.getKey(), entry.getValue());
+        }
+        return bytes;
+    }
+
+    public Set<String> evictedNamespaces() {
+        return Set.copyOf(evicted.keySet());
+    }
+
+    public EvictionMetrics evictionMetrics() {
+        return evictionMetrics;
+    }
+
+    /**
+     * Evicts namespaces, least recently used first, until the {@link #residentBytes resident} ones fit the budget.
+     * Namespaces used within the last {@code minIdleMillis} are kept so a working set larger than the budget does
+     * not thrash.
+     *
+     * @return the number of evicted namespaces
+     */
+    public int enforceMemoryBudget(long minIdleMillis) {
+        long budget = memoryBudget;
+        if (coldStorage == null || budget <= 0) {
+            return 0;
+        }
+        Map<String, Long> sizes = new HashMap<>();
+        long resident = 0;
+        for (Map.Entry<String, VectorIndex> entry : indexes.entrySet()) {
+            long bytes = memoryBytes(entry.getKey(), entry.getValue());
+            sizes.put(entry.getKey(), bytes);
+            resident += bytes;
+        }
+        if (resident <= budget) {
+            return 0;
+        }
+        long idleSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(minIdleMillis);
+        Map<String, Long> accessed = new HashMap<>();
+        for (String namespace : sizes.keySet()) {
+            AtomicLong access = lastAccess.get(namespace);
+            accessed.put(namespace, access == null ? idleSince : access.get());
+        }
+        List<String> candidates = new ArrayList<>(sizes.keySet());
+        candidates.sort(Comparator.comparingLong(accessed::get));
+        int count = 0;
+        for (String namespace : candidates) {
+            if (resident <= budget || accessed.get(namespace) - idleSince > 0) {
+                break;
+            }
+            try {
+                if (evict(namespace)) {
+                    resident -= sizes.get(namespace);
+                    count++;
+                }
+            } catch (IOException | RuntimeException ex) {
+                LOGGER.error("Failed to evict namespace '{}'", namespace, ex);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes a namespace to cold storage and drops it from memory. Searches already running on it finish on the
+     * old instance.
+     */
+    public boolean evict(String namespace) throws IOException {
+        ColdStorage storage = coldStorage;
+        if (storage == null) {
+            throw new IllegalStateException("No cold storage configured");
+        }
+        ReadWriteLock gate = writeGate(namespace);
+        gate.writeLock().lock();
+        try {
+            VectorIndex index = indexes.get(namespace);
+            if (index == null) {
+                return false;
+            }
+            long started = System.nanoTime();
+            storage.store(namespace, index);
+            evicted.put(namespace, index.size());
+            indexes.remove(namespace);
+            dropQueryCache(namespace);
+            journal.release(namespace);
+            long elapsed = System.nanoTime() - started;
+            evictionMetrics.recordEviction(elapsed);
+            LOGGER.info("Evicted namespace '{}' ({} vectors, {} bytes) in {} ms", namespace, index.size(),
+                    index.memoryBytes(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return true;
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    private VectorIndex reload(String namespace) {
+        ReadWriteLock gate = writeGate(namespace);
+        gate.writeLock().lock();
+        try {
+            VectorIndex index = indexes.get(namespace);
+            if (index != null || !evicted.containsKey(namespace)) {
+                return index;
+            }
+            long started = System.nanoTime();
+            index = coldStorage.load(namespace);
+            indexes.put(namespace, index);
+            evicted.remove(namespace);
+            long elapsed = System.nanoTime() - started;
+            evictionMetrics.recordReload(elapsed);
+            LOGGER.info("Reloaded namespace '{}' ({} vectors) in {} ms", namespace, index.size(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return index;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to reload namespace '" + namespace + "'", ex);
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    private long memoryBytes(String namespace, VectorIndex index) {
+        QueryCache cache = queryCaches.get(namespace);
+        return index.memoryBytes() + journal.memoryBytes(namespace) + (cache == null ? 0 : cache.memoryBytes());
+    }
+
+    private void dropQueryCache(String namespace) {
+        QueryCache cache = queryCaches.remove(namespace);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private void touch(String namespace) {
+        lastAccess.computeIfAbsent(namespace, ns -> new AtomicLong()).lazySet(System.nanoTime());
+    }
+
+    /**
+     * Locks the stripes covering {@code ids}, in ascending order so that overlapping batches cannot deadlock.
+     * Without them two writes to one id could be journaled in one order and applied in the other, and replay or a
+     * replica would then end up with the value the primary overwrote.
+     */
+    private int[] lockOrder(String namespace, List<String> ids) {
+        int[] stripes = new int[ids.size()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = ((31 * namespace.hashCode() + ids.get(i).hashCode()) & 0x7fffffff) % ORDER_LOCK_STRIPES;
+        }
+        stripes = Arrays.stream(stripes).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            orderLocks[stripe].lock();
+        }
+        return stripes;
+    }
+
+    private void unlockOrder(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            orderLocks[stripes[i]].unlock();
+        }
+    }
+
+    private ReadWriteLock writeGate(String namespace) {
+        return writeGates.computeIfAbsent(namespace, ns -> new ReentrantReadWriteLock());
+    }
+
+    public IndexOptions defaultOptions() {
+        return defaultOptions;
+    }
+
+    /**
+     * Vector counts of every namespace; evicted namespaces report their size at eviction.
+     */
     public Map<String, Integer> describe() {
-        return indexes.entrySet().stream()
-                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().size()));
+        Map<String, Integer> sizes = new HashMap<>(evicted);
+        sizes.putAll(indexes.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().size())));
+        return sizes;
     }
 }
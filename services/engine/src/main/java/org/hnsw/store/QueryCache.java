@@ -0,0 +1,236 @@
+package org.hnsw.store;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.hnsw.hnsw.VectorIndex;
+
+/**
+ * Results of recent searches on one namespace, evicted least recently used first once the entry bound is reached
+ * or the caches sharing its {@link Budget} outgrow it. Entries remember the index and
+ * {@link VectorIndex#version version} they were computed on and are only served while both are unchanged, so a
+ * write invalidates the whole cache in constant time and a swapped-in index never sees results of the one it
+ * replaced.
+ */
+public final class QueryCache {
+    /** A cache that never holds anything. */
+    public static final QueryCache DISABLED = new QueryCache(0, new Budget(0));
+
+    private static final int ENTRY_BYTES = 160;
+    private static final int RESULT_BYTES = 56;
+
+    private final int maxEntries;
+    private final Budget budget;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long bytes;
+    private boolean cleared;
+
+    /**
+     * Approximate bound on the memory the caches of every namespace take together. When they outgrow it, the
+     * cache holding the most gives up its least recently used entries first.
+     */
+    public static final class Budget {
+        private final long maxBytes;
+        private final Set<QueryCache> caches = ConcurrentHashMap.newKeySet();
+        private final AtomicLong bytes = new AtomicLong();
+
+        public Budget(long maxBytes) {
+            if (maxBytes < 0) {
+                throw new IllegalArgumentException("Query cache budget must not be negative");
+            }
+            this.maxBytes = maxBytes;
+        }
+
+        public long maxBytes() {
+            return maxBytes;
+        }
+
+        public long memoryBytes() {
+            return bytes.get();
+        }
+
+        private void enforce() {
+            while (bytes.get() > maxBytes) {
+                QueryCache largest = null;
+                for (QueryCache cache : caches) {
+                    if (largest == null || cache.memoryBytes() > largest.memoryBytes()) {
+                        largest = cache;
+                    }
+                }
+                if (largest == null || !largest.evictEldest()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param maxEntries most results kept, or 0 to disable the cache
+     * @param budget     memory bound shared with the other namespaces' caches
+     */
+    public QueryCache(int maxEntries, Budget budget) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Query cache bounds must not be negative");
+        }
+        this.maxEntries = maxEntries;
+        this.budget = budget;
+    }
+
+    public boolean enabled() {
+        return maxEntries > 0 && budget.maxBytes() > 0;
+    }
+
+    /**
+     * Returns the cached results of this exact search on {@code index} if nothing was written to it since they
+     * were computed, and otherwise searches and caches the results.
+     */
+    public List<SearchResult> search(VectorIndex index, float[] query, int topK, MetadataFilter filter,
+                                     SearchParams params) {
+        if (!enabled()) {
+            return index.search(query, topK, filter, params);
+        }
+        Key key = new Key(query.clone(), topK, filter, params);
+        long version = index.version();
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.index == index && cached.version == version) {
+            hits.increment();
+            return cached.results;
+        }
+        misses.increment();
+        List<SearchResult> results = List.copyOf(index.search(query, topK, filter, params));
+        put(key, new Entry(index, version, results, size(key, results)));
+        return results;
+    }
+
+    /**
+     * Drops every entry and stops caching, for when the namespace's index is replaced or evicted and the
+     * registry moves on to a new cache.
+     */
+    public synchronized void clear() {
+        cleared = true;
+        entries.clear();
+        budget.bytes.addAndGet(-bytes);
+        budget.caches.remove(this);
+        bytes = 0;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Entries dropped to stay within the bounds. Entries that went stale are replaced in place and not counted.
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Fraction of searches answered from the cache, or 0 before the first one.
+     */
+    public double hitRate() {
+        long hit = hits();
+        long total = hit + misses();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long memoryBytes() {
+        return bytes;
+    }
+
+    private void put(Key key, Entry entry) {
+        if (entry.bytes > budget.maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (cleared) {
+                return;
+            }
+            budget.caches.add(this);
+            Entry replaced = entries.put(key, entry);
+            long added = entry.bytes - (replaced == null ? 0 : replaced.bytes);
+            bytes += added;
+            budget.bytes.addAndGet(added);
+            while (entries.size() > maxEntries) {
+                evictEldest();
+            }
+        }
+        budget.enforce();
+    }
+
+    private synchronized boolean evictEldest() {
+        Iterator<Entry> eldest = entries.values().iterator();
+        if (!eldest.hasNext()) {
+            return false;
+        }
+        long freed = eldest.next().bytes;
+        eldest.remove();
+        bytes -= freed;
+        budget.bytes.addAndGet(-freed);
+        evictions.increment();
+        return true;
+    }
+
+    private static long size(Key key, List<SearchResult> results) {
+        long size = ENTRY_BYTES + (long) key.query.length * Float.BYTES;
+        for (SearchResult result : results) {
+            size += RESULT_BYTES + 2L * result.id().length();
+        }
+        return size;
+    }
+
+    private record Entry(VectorIndex index, long version, List<SearchResult> results, long bytes) {
+    }
+
+    private static final class Key {
+        private final float[] query;
+        private final int topK;
+        private final MetadataFilter filter;
+        private final SearchParams params;
+        private final int hash;
+
+        Key(float[] query, int topK, MetadataFilter filter, SearchParams params) {
+            this.query = query;
+            this.topK = topK;
+            this.filter = filter;
+            this.params = params;
+            this.hash = 31 * (31 * (31 * Arrays.hashCode(query) + topK) + Objects.hashCode(filter))
+                    + Objects.hashCode(params);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && hash == key.hash && topK == key.topK
+                    && Arrays.equals(query, key.query) && Objects.equals(filter, key.filter)
+                    && Objects.equals(params, key.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
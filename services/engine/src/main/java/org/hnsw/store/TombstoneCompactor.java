@@ -0,0 +1,59 @@
+package org.hnsw.store;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.hnsw.VectorIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background task that compacts namespaces once the share of tombstoned nodes passes a threshold.
+ */
+public final class TombstoneCompactor implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TombstoneCompactor.class);
+
+    private final NamespaceIndexRegistry registry;
+    private final double threshold;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tombstone-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TombstoneCompactor(NamespaceIndexRegistry registry, double threshold, Duration interval) {
+        this.registry = registry;
+        this.threshold = threshold;
+        this.interval = interval;
+    }
+
+    public void start() {
+        long period = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::compactAll, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void compactAll() {
+        for (String namespace : registry.namespaces()) {
+            VectorIndex index = registry.peek(namespace);
+            if (index == null || index.tombstoneRatio() < threshold) {
+                continue;
+            }
+            try {
+                long started = System.nanoTime();
+                int reclaimed = index.compact();
+                LOGGER.info("Compacted namespace '{}': reclaimed {} nodes in {} ms", namespace, reclaimed,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            } catch (RuntimeException ex) {
+                LOGGER.error("Compaction of namespace '{}' failed", namespace, ex);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
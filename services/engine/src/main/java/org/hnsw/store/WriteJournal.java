@@ -0,0 +1,43 @@
+package org.hnsw.store;
+
+import java.util.List;
+import org.hnsw.VectorRecord;
+import org.hnsw.hnsw.VectorIndex;
+
+public interface WriteJournal {
+    WriteJournal NONE = new WriteJournal() {
+        @Override
+        public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+        }
+
+        @Override
+        public void appendDelete(String namespace, List<String> ids) {
+        }
+
+        @Override
+        public void appendReplace(String namespace, VectorIndex index) {
+        }
+    };
+
+    void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records);
+
+    void appendDelete(String namespace, List<String> ids);
+
+    /**
+     * Records that {@code index} replaces the whole namespace. Must be durable before returning.
+     */
+    void appendReplace(String namespace, VectorIndex index);
+
+    /**
+     * Memory the journal holds for a namespace, counted toward the registry's memory budget.
+     */
+    default long memoryBytes(String namespace) {
+        return 0;
+    }
+
+    /**
+     * Drops what the journal holds in memory for a namespace that was evicted.
+     */
+    default void release(String namespace) {
+    }
+}
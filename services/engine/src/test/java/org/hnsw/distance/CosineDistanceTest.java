@@ -0,0 +1,29 @@
+package org.hnsw.distance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class CosineDistanceTest {
+    private final CosineDistance cosine = new CosineDistance(VectorOps.create(false));
+
+    @Test
+    void rawVectorsAreNormalized() {
+        assertEquals(0.0, cosine.distance(new float[] {3, 0}, new float[] {5, 0}), 1e-6);
+        assertEquals(1.0, cosine.distance(new float[] {1, 0}, new float[] {0, 2}), 1e-6);
+        assertEquals(2.0, cosine.distance(new float[] {1, 1}, new float[] {-2, -2}), 1e-6);
+        assertEquals(0.2, cosine.distance(new float[] {1, 2}, new float[] {2, 1}), 1e-6);
+    }
+
+    @Test
+    void zeroVectorIsAtDistanceOne() {
+        assertEquals(1.0, cosine.distance(new float[] {0, 0}, new float[] {1, 2}), 1e-6);
+    }
+
+    @Test
+    void preparedFastPathMatchesRawDistance() {
+        float[] a = {1, 2, 3};
+        float[] b = {-4, 0.5f, 2};
+        assertEquals(cosine.distance(a, b), cosine.distance(cosine.prepare(a), cosine.prepare(b), 0), 1e-6);
+    }
+}
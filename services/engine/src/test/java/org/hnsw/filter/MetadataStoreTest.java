@@ -0,0 +1,52 @@
+package org.hnsw.filter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class MetadataStoreTest {
+
+    @Test
+    void rowsReadBackAsTheyWereLastSet() {
+        MetadataStore store = new MetadataStore();
+        store.set(0, Map.of("lang", "en", "kind", "doc"));
+        store.set(5, Map.of("lang", "fr"));
+        store.set(2_000, Map.of("kind", "doc", "owner", "ana"));
+
+        assertEquals(Map.of("lang", "en", "kind", "doc"), store.get(0));
+        assertEquals(Map.of("lang", "fr"), store.get(5));
+        assertEquals(Map.of("kind", "doc", "owner", "ana"), store.get(2_000));
+        assertEquals(Map.of(), store.get(1));
+        assertEquals(Map.of(), store.get(50_000));
+
+        store.set(0, Map.of("owner", "bo"));
+        assertEquals(Map.of("owner", "bo"), store.get(0));
+        store.clear(5);
+        assertEquals(Map.of(), store.get(5));
+        assertThrows(UnsupportedOperationException.class, () -> store.get(2_000).put("lang", "de"));
+    }
+
+    @Test
+    void reclaimDropsValuesNoRowRefersTo() {
+        MetadataStore store = new MetadataStore();
+        String padding = "x".repeat(1_000);
+        int nodes = 3_000;
+        for (int node = 0; node < nodes; node++) {
+            store.set(node, Map.of("body", node + padding, "lang", "en"));
+        }
+        long before = store.memoryBytes();
+        for (int node = 0; node < nodes; node++) {
+            store.set(node, Map.of("lang", node % 2 == 0 ? "en" : "fr"));
+        }
+
+        assertTrue(store.reclaim() > 0);
+        assertTrue(store.memoryBytes() < before / 10, "memory " + store.memoryBytes() + " of " + before);
+        assertEquals(0, store.reclaim());
+        for (int node = 0; node < nodes; node++) {
+            assertEquals(Map.of("lang", node % 2 == 0 ? "en" : "fr"), store.get(node));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.hnsw.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    void callsBeyondTheLimitAreRefused() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(4, 1, 100);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.inFlight());
+
+        limiter.release(FAST);
+        assertEquals(3, limiter.inFlight());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    void initialLimitIsClampedToItsBounds() {
+        assertEquals(8, new AdaptiveLimiter(2, 8, 16).limit());
+        assertEquals(16, new AdaptiveLimiter(64, 8, 16).limit());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyHoldsAndShrinksWhenItRises() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(16, 8, 64);
+        for (int round = 0; round < 100; round++) {
+            saturate(limiter, FAST);
+        }
+        assertEquals(64, limiter.limit());
+        assertEquals(FAST, limiter.recentLatencyNanos());
+
+        for (int round = 0; round < 5; round++) {
+            saturate(limiter, SLOW);
+        }
+        int slowed = limiter.limit();
+        assertTrue(slowed < 32, "limit " + slowed + " after latency rose");
+
+        for (int round = 0; round < 100; round++) {
+            saturate(limiter, SLOW * (round + 2));
+        }
+        assertEquals(8, limiter.limit());
+    }
+
+    /**
+     * Fills the limiter and then completes every call with the given latency.
+     */
+    private static void saturate(AdaptiveLimiter limiter, long latencyNanos) {
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
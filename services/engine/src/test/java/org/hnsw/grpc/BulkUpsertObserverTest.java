@@ -0,0 +1,168 @@
+package org.hnsw.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.store.IndexOptions;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.junit.jupiter.api.Test;
+import vector_service.VectorServiceOuterClass.BulkUpsertRequest;
+import vector_service.VectorServiceOuterClass.BulkUpsertResponse;
+import vector_service.VectorServiceOuterClass.Vector;
+
+class BulkUpsertObserverTest {
+    private static final IndexOptions OPTIONS = IndexOptions.of(QuantizationConfig.none());
+    private static final SearchParams EXACT = new SearchParams(0, 0, 0, true);
+
+    private final NamespaceIndexRegistry registry = new NamespaceIndexRegistry(8, 32, 16,
+            new EuclideanDistance(VectorOps.create(false)), OPTIONS);
+    private final ArrayDeque<Runnable> builds = new ArrayDeque<>();
+    private final FakeResponseObserver response = new FakeResponseObserver();
+
+    @Test
+    void streamedBatchesAreAppliedInOrderWithBoundedRequests() {
+        BulkUpsertObserver observer = new BulkUpsertObserver(registry, response, builds::add, 1,
+                request -> OPTIONS);
+        assertEquals(1, response.requested);
+
+        observer.onNext(request(0, 1024, false));
+        assertEquals(2, response.requested);
+        observer.onNext(request(1024, 2048, false));
+        assertEquals(2, response.requested, "requested more while two batches were in flight");
+        runBuilds();
+        assertEquals(3, response.requested);
+
+        observer.onNext(BulkUpsertRequest.newBuilder()
+                .setNamespace("docs")
+                .addVectors(vector("id-0", -1))
+                .addVectors(vector("id-2048", 5000))
+                .build());
+        observer.onCompleted();
+        runBuilds();
+
+        assertNull(response.error);
+        assertTrue(response.completed);
+        BulkUpsertResponse result = response.values.get(0);
+        assertEquals(2050, result.getUpsertedCount());
+        assertEquals(3, result.getBatches());
+        assertEquals(2049, registry.get("docs").size());
+        SearchResult nearest = registry.get("docs").search(new float[] {-1, -1}, 1, null, EXACT).get(0);
+        assertEquals("id-0", nearest.id());
+        assertEquals(-1f, nearest.values()[0]);
+    }
+
+    @Test
+    void rebuildReplacesTheNamespaceWhenTheStreamCompletes() {
+        registry.upsert("docs", OPTIONS, List.of(new VectorRecord("stale", new float[] {7, 7}, Map.of())));
+        BulkUpsertObserver observer = new BulkUpsertObserver(registry, response, builds::add, 2,
+                request -> OPTIONS);
+
+        observer.onNext(request(0, 100, true));
+        runBuilds();
+        assertEquals(1, registry.get("docs").size(), "rebuild was visible before the stream completed");
+        observer.onCompleted();
+        runBuilds();
+
+        assertNull(response.error);
+        assertEquals(100, response.values.get(0).getUpsertedCount());
+        assertEquals(100, registry.get("docs").size());
+        assertEquals("id-7", registry.get("docs").search(new float[] {7, 7}, 1, null, EXACT).get(0).id());
+    }
+
+    private void runBuilds() {
+        Runnable build;
+        while ((build = builds.poll()) != null) {
+            build.run();
+        }
+    }
+
+    private static BulkUpsertRequest request(int from, int to, boolean rebuild) {
+        BulkUpsertRequest.Builder builder = BulkUpsertRequest.newBuilder().setNamespace("docs").setRebuild(rebuild);
+        for (int i = from; i < to; i++) {
+            builder.addVectors(vector("id-" + i, i));
+        }
+        return builder.build();
+    }
+
+    private static Vector vector(String id, float value) {
+        return Vector.newBuilder().setId(id).addValues(value).addValues(value).build();
+    }
+
+    private static final class FakeResponseObserver extends ServerCallStreamObserver<BulkUpsertResponse> {
+        private final List<BulkUpsertResponse> values = new ArrayList<>();
+        private int requested;
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onNext(BulkUpsertResponse value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+
+        @Override
+        public void request(int count) {
+            requested += count;
+        }
+
+        @Override
+        public void disableAutoRequest() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setOnCancelHandler(Runnable onCancelHandler) {
+        }
+
+        @Override
+        public void setOnCloseHandler(Runnable onCloseHandler) {
+        }
+
+        @Override
+        public void setCompression(String compression) {
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setOnReadyHandler(Runnable onReadyHandler) {
+        }
+
+        @Override
+        @Deprecated
+        public void disableAutoInboundFlowControl() {
+        }
+
+        @Override
+        public void setMessageCompression(boolean enable) {
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.hnsw.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.protobuf.ByteString;
+import org.junit.jupiter.api.Test;
+import vector_service.VectorServiceOuterClass.PackedVector;
+import vector_service.VectorServiceOuterClass.VectorEncoding;
+
+class PackedVectorsTest {
+
+    @Test
+    void decodesLittleEndianElements() {
+        byte[] float32 = {0x00, 0x00, (byte) 0x80, 0x3F, 0x00, 0x00, 0x20, (byte) 0xC0};
+        assertArrayEquals(new float[] {1f, -2.5f},
+                PackedVectors.decode(packed(VectorEncoding.VECTOR_ENCODING_FLOAT32, float32, 0)));
+
+        byte[] float16 = {0x00, 0x3C, 0x00, (byte) 0xC0, 0x00, 0x38};
+        assertArrayEquals(new float[] {1f, -2f, 0.5f},
+                PackedVectors.decode(packed(VectorEncoding.VECTOR_ENCODING_FLOAT16, float16, 0)));
+
+        byte[] int8 = {1, -2, 127};
+        assertArrayEquals(new float[] {0.5f, -1f, 63.5f},
+                PackedVectors.decode(packed(VectorEncoding.VECTOR_ENCODING_INT8, int8, 0.5f)));
+    }
+
+    @Test
+    void rejectsTruncatedElementsAndInvalidScales() {
+        PackedVector float32 = packed(VectorEncoding.VECTOR_ENCODING_FLOAT32, new byte[6], 0);
+        PackedVector float16 = packed(VectorEncoding.VECTOR_ENCODING_FLOAT16, new byte[3], 0);
+        PackedVector unscaled = packed(VectorEncoding.VECTOR_ENCODING_INT8, new byte[4], 0);
+        PackedVector negative = packed(VectorEncoding.VECTOR_ENCODING_INT8, new byte[4], -1);
+
+        assertThrows(IllegalArgumentException.class, () -> PackedVectors.decode(float32));
+        assertThrows(IllegalArgumentException.class, () -> PackedVectors.decode(float16));
+        assertThrows(IllegalArgumentException.class, () -> PackedVectors.decode(unscaled));
+        assertThrows(IllegalArgumentException.class, () -> PackedVectors.decode(negative));
+    }
+
+    @Test
+    void encodedVectorsDecodeToTheirValues() {
+        float[] values = {0.25f, -1.5f, 3f, 0f};
+        PackedVector float32 = PackedVectors.encode(values, VectorEncoding.VECTOR_ENCODING_FLOAT32);
+        PackedVector float16 = PackedVectors.encode(values, VectorEncoding.VECTOR_ENCODING_FLOAT16);
+        PackedVector int8 = PackedVectors.encode(values, VectorEncoding.VECTOR_ENCODING_INT8);
+
+        assertEquals(16, float32.getData().size());
+        assertArrayEquals(values, PackedVectors.decode(float32));
+        assertEquals(8, float16.getData().size());
+        assertArrayEquals(values, PackedVectors.decode(float16));
+        assertEquals(4, int8.getData().size());
+        float[] decoded = PackedVectors.decode(int8);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], decoded[i], int8.getScale() / 2);
+        }
+    }
+
+    private static PackedVector packed(VectorEncoding encoding, byte[] data, float scale) {
+        return PackedVector.newBuilder()
+                .setEncoding(encoding)
+                .setData(ByteString.copyFrom(data))
+                .setScale(scale)
+                .build();
+    }
+}
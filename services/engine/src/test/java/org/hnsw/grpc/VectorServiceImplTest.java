@@ -0,0 +1,123 @@
+package org.hnsw.grpc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.grpc.stub.StreamObserver;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.metrics.RpcMetrics;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.store.IndexOptions;
+import org.hnsw.store.NamespaceIndexRegistry;
+import org.junit.jupiter.api.Test;
+import vector_service.VectorServiceOuterClass.BatchQuery;
+import vector_service.VectorServiceOuterClass.Match;
+import vector_service.VectorServiceOuterClass.QueryBatchRequest;
+import vector_service.VectorServiceOuterClass.QueryBatchResponse;
+import vector_service.VectorServiceOuterClass.QueryResponse;
+
+class VectorServiceImplTest {
+    private static final int DIMENSION = 8;
+    private static final int SEARCH_THREADS = 4;
+
+    @Test
+    void queryBatchRunsEachQueryOnTheSearchExecutorAndKeepsTheirOrder() throws Exception {
+        NamespaceIndexRegistry registry = new NamespaceIndexRegistry(8, 32, 16,
+                new EuclideanDistance(VectorOps.create(false)), IndexOptions.of(QuantizationConfig.none()));
+        Random random = new Random(3);
+        List<VectorRecord> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            records.add(new VectorRecord("id-" + i, randomVector(random), Map.of()));
+        }
+        registry.upsert("docs", IndexOptions.of(QuantizationConfig.none()), records);
+
+        AtomicInteger started = new AtomicInteger();
+        ThreadPoolExecutor searchExecutor = new ThreadPoolExecutor(SEARCH_THREADS, SEARCH_THREADS, 0,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable task) {
+                started.incrementAndGet();
+            }
+        };
+        try {
+            VectorServiceImpl service = new VectorServiceImpl(registry, searchExecutor, searchExecutor,
+                    SEARCH_THREADS, new RpcMetrics(), null, null);
+            List<float[]> queries = new ArrayList<>();
+            QueryBatchRequest.Builder request = QueryBatchRequest.newBuilder().setNamespace("docs");
+            for (int q = 0; q < 16; q++) {
+                float[] query = randomVector(random);
+                queries.add(query);
+                request.addQueries(BatchQuery.newBuilder().addAllVector(toList(query)).setTopK(1 + q % 5));
+            }
+            Recorder<QueryBatchResponse> observer = new Recorder<>();
+            service.queryBatch(request.build(), observer);
+
+            assertNull(observer.error);
+            assertTrue(observer.completed);
+            assertEquals(1, observer.values.size());
+            List<QueryResponse> results = observer.values.get(0).getResultsList();
+            assertEquals(queries.size(), results.size());
+            for (int q = 0; q < queries.size(); q++) {
+                List<SearchResult> expected = registry.get("docs").search(queries.get(q), 1 + q % 5);
+                List<Match> matches = results.get(q).getMatchesList();
+                assertEquals(expected.size(), matches.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(expected.get(i).id(), matches.get(i).getId(), "query " + q + " rank " + i);
+                }
+            }
+            assertEquals(queries.size(), started.get());
+            assertEquals(SEARCH_THREADS, searchExecutor.getLargestPoolSize());
+        } finally {
+            searchExecutor.shutdownNow();
+        }
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] values = new float[DIMENSION];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+
+    private static List<Float> toList(float[] values) {
+        List<Float> list = new ArrayList<>(values.length);
+        for (float value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static final class Recorder<T> implements StreamObserver<T> {
+        private final List<T> values = new ArrayList<>();
+        private Throwable error;
+        private boolean completed;
+
+        @Override
+        public void onNext(T value) {
+            values.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+        }
+
+        @Override
+        public void onCompleted() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package org.hnsw.hnsw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.quantization.QuantizationConfig;
+import org.junit.jupiter.api.Test;
+
+class HnswIndexConcurrencyTest {
+    private static final int DIMENSION = 8;
+    private static final int STRESS_DIMENSION = 128;
+    private static final int WRITERS = 4;
+    private static final int IDS_PER_WRITER = 1_000;
+
+    @Test
+    void concurrentWritesKeepTheGraphConsistentAndSearchable() throws Exception {
+        HnswIndex index = new HnswIndex(STRESS_DIMENSION, 12, 100, 64, new EuclideanDistance(VectorOps.create(true)));
+        index.setFlatSearchFloats(0);
+        List<Map<String, float[]>> expected = new ArrayList<>();
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 3);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                Map<String, float[]> live = new HashMap<>();
+                expected.add(live);
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(writer);
+                    for (int op = 0; op < 3 * IDS_PER_WRITER; op++) {
+                        String id = writer + "-" + random.nextInt(IDS_PER_WRITER);
+                        if (random.nextInt(4) == 0) {
+                            assertEquals(live.remove(id) != null, index.delete(id), "delete of " + id);
+                        } else {
+                            float[] values = randomVector(random);
+                            index.upsert(new VectorRecord(id, values, Map.of("writer", Integer.toString(writer))));
+                            live.put(id, values);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            List<Future<?>> background = new ArrayList<>();
+            for (int s = 0; s < 2; s++) {
+                int searcher = s;
+                background.add(executor.submit(() -> {
+                    Random random = new Random(100 + searcher);
+                    MetadataFilter oneWriter = new MetadataFilter.Match("writer", Set.of("0"));
+                    for (int q = 0; !done.get(); q++) {
+                        MetadataFilter filter = q % 2 == 0 ? null : oneWriter;
+                        float[] query = randomVector(random);
+                        List<SearchResult> results = index.search(query, 10, filter, SearchParams.DEFAULT);
+                        Set<String> seen = new HashSet<>();
+                        double previous = Double.NEGATIVE_INFINITY;
+                        for (SearchResult result : results) {
+                            assertNotNull(result.id());
+                            assertTrue(seen.add(result.id()), "duplicate result " + result.id());
+                            assertTrue(result.distance() >= previous, "results out of order");
+                            previous = result.distance();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            background.add(executor.submit(() -> {
+                while (!done.get()) {
+                    index.compact();
+                    Thread.sleep(20);
+                }
+                return null;
+            }));
+            try {
+                for (Future<?> writer : writers) {
+                    writer.get(120, TimeUnit.SECONDS);
+                }
+            } finally {
+                done.set(true);
+            }
+            for (Future<?> future : background) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+
+        int live = expected.stream().mapToInt(Map::size).sum();
+        assertEquals(live, index.size());
+        assertTrue(live > 2 * VectorStore.PAGE_SIZE, "searches did not overlap storage growth");
+        assertEquals(List.of(), index.violations());
+        index.compact();
+        assertEquals(List.of(), index.violations());
+        assertEquals(0, index.tombstoneCount());
+
+        SearchParams wide = new SearchParams(200, 0, 0);
+        SearchParams exact = new SearchParams(0, 0, 0, true);
+        Random random = new Random(42);
+        int found = 0;
+        int queries = 200;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            List<SearchResult> truth = index.search(query, 10, null, exact);
+            Set<String> approximate = new HashSet<>();
+            for (SearchResult result : index.search(query, 10, null, wide)) {
+                approximate.add(result.id());
+            }
+            for (SearchResult result : truth) {
+                found += approximate.contains(result.id()) ? 1 : 0;
+            }
+        }
+        double recall = (double) found / (queries * 10);
+        assertTrue(recall >= 0.9, "recall@10 " + recall);
+        for (Map<String, float[]> records : expected) {
+            for (Map.Entry<String, float[]> record : records.entrySet()) {
+                if (random.nextInt(20) == 0) {
+                    SearchResult nearest = index.search(record.getValue(), 1, null, exact).get(0);
+                    assertEquals(record.getKey(), nearest.id());
+                    assertTrue(Arrays.equals(record.getValue(), nearest.values()), "stale vector for " + nearest.id());
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorsWrittenWhileTheCodecTrainsAreEncoded() throws Exception {
+        QuantizationConfig int8 = new QuantizationConfig(QuantizationConfig.Mode.INT8, 500, 0, false);
+        HnswIndex index = new HnswIndex(16, 8, 64, 32, new EuclideanDistance(VectorOps.create(true)), int8);
+        List<VectorRecord> records = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 4_000; i++) {
+            float[] values = new float[16];
+            for (int d = 0; d < values.length; d++) {
+                values[d] = random.nextFloat();
+            }
+            records.add(new VectorRecord("id-" + i, values, Map.of()));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    for (int i = writer; i < records.size(); i += WRITERS) {
+                        index.upsert(records.get(i));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(index.isQuantized());
+        assertEquals(records.size(), index.size());
+        for (VectorRecord record : records) {
+            SearchResult nearest = index.search(record.values(), 1).get(0);
+            assertEquals(record.id(), nearest.id());
+            float[] decoded = nearest.values();
+            for (int d = 0; d < decoded.length; d++) {
+                assertEquals(record.values()[d], decoded[d], 0.02, record.id() + " was not encoded");
+            }
+        }
+    }
+
+    @Test
+    void lazyResultsStayReadableWhileTheirIdIsUpdated() throws Exception {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 32, new EuclideanDistance(VectorOps.create(true)));
+        for (int i = 0; i < 32; i++) {
+            index.upsert(record("other-" + i, 100 + i));
+        }
+        index.upsert(record("hot", 0));
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                readers.add(executor.submit(() -> {
+                    while (!done.get()) {
+                        List<SearchResult> found = index.search(constant(0), 1);
+                        if (found.isEmpty() || !found.get(0).id().equals("hot")) {
+                            continue;
+                        }
+                        SearchResult hot = found.get(0);
+                        for (int i = 0; i < 1_000; i++) {
+                            float[] values = hot.values();
+                            Map<String, String> metadata = hot.metadata();
+                            assertTrue(values.length == 0 || values.length == DIMENSION);
+                            if (values.length == DIMENSION) {
+                                assertTrue(Arrays.equals(values, constant(values[0])), "torn vector");
+                            }
+                            assertTrue(metadata.isEmpty() || metadata.containsKey("round"));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> writer = executor.submit(() -> {
+                try {
+                    for (int round = 1; round <= 5_000; round++) {
+                        index.upsert(record("hot", round % 2 == 0 ? 0 : 0.5f));
+                    }
+                } finally {
+                    done.set(true);
+                }
+                return null;
+            });
+            writer.get(60, TimeUnit.SECONDS);
+            for (Future<?> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(33, index.size());
+        assertEquals(DIMENSION, index.search(constant(0), 1).get(0).values().length);
+    }
+
+    @Test
+    void searchesOverlappingStorageGrowthOnlySeeAssignedNodes() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            growWhileSearching(round);
+        }
+    }
+
+    private static void growWhileSearching(int seed) throws Exception {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 32, 16, new EuclideanDistance(VectorOps.create(true)));
+        index.setFlatSearchFloats(0);
+        int records = 8 * VectorStore.PAGE_SIZE;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + 2);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    Random random = new Random(seed * WRITERS + writer);
+                    for (int i = writer; i < records; i += WRITERS) {
+                        index.upsert(new VectorRecord("id-" + i, smallVector(random),
+                                Map.of("bucket", Integer.toString(i % 64))));
+                    }
+                    return null;
+                }));
+            }
+            List<MetadataFilter> filters = Arrays.asList(null,
+                    new MetadataFilter.Match("bucket", Set.of("0")),
+                    new MetadataFilter.Match("bucket", Set.of("1", "2", "3", "4", "5", "6", "7", "8")));
+            List<Future<?>> searchers = new ArrayList<>();
+            for (int s = 0; s < 2; s++) {
+                int searcher = s;
+                searchers.add(executor.submit(() -> {
+                    Random random = new Random(100 + seed * 2 + searcher);
+                    for (int q = 0; !done.get(); q++) {
+                        MetadataFilter filter = filters.get(q % filters.size());
+                        float[] query = smallVector(random);
+                        for (SearchResult result : index.search(query, 10, filter, SearchParams.DEFAULT)) {
+                            assertNotNull(result.id());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            try {
+                for (Future<?> writer : writers) {
+                    writer.get(120, TimeUnit.SECONDS);
+                }
+            } finally {
+                done.set(true);
+            }
+            for (Future<?> searcher : searchers) {
+                searcher.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            done.set(true);
+            executor.shutdownNow();
+        }
+        assertEquals(records, index.size());
+        assertEquals(List.of(), index.violations());
+    }
+
+    private static VectorRecord record(String id, float value) {
+        return new VectorRecord(id, constant(value), Map.of("round", Float.toString(value)));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] values = new float[STRESS_DIMENSION];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+
+    private static float[] smallVector(Random random) {
+        float[] values = new float[DIMENSION];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+
+    private static float[] constant(float value) {
+        float[] values = new float[DIMENSION];
+        Arrays.fill(values, value);
+        return values;
+    }
+}
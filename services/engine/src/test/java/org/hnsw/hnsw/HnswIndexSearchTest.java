@@ -0,0 +1,148 @@
+package org.hnsw.hnsw;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.CosineDistance;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.quantization.QuantizationConfig;
+import org.junit.jupiter.api.Test;
+
+class HnswIndexSearchTest {
+    private static final int DIMENSION = 8;
+    private static final EuclideanDistance DISTANCE = new EuclideanDistance(VectorOps.create(false));
+    private static final SearchParams EXACT = new SearchParams(0, 0, 0, true);
+
+    @Test
+    void exactSearchIsRefusedWhenOnlyCodesAreKept() {
+        HnswIndex codesOnly = quantized(false);
+        float[] query = new float[DIMENSION];
+
+        assertTrue(codesOnly.isQuantized());
+        assertThrows(IllegalArgumentException.class, () -> codesOnly.search(query, 5, null, EXACT));
+        assertEquals(5, codesOnly.search(query, 5).size());
+    }
+
+    @Test
+    void exactSearchOnAQuantizedIndexScoresFullVectors() {
+        HnswIndex index = quantized(true);
+        float[] query = new float[DIMENSION];
+
+        List<SearchResult> results = index.search(query, 5, null, EXACT);
+        assertTrue(index.isQuantized());
+        assertEquals(5, results.size());
+        for (SearchResult result : results) {
+            assertEquals(DISTANCE.distance(query, result.values()), result.distance(), 1e-9);
+        }
+    }
+
+    @Test
+    void cosineIndexesReturnStoredValuesAtUnitLength() {
+        HnswIndex index = new HnswIndex(3, 8, 32, 16, new CosineDistance(VectorOps.create(false)));
+        index.upsert(new VectorRecord("a", new float[] {3, 0, 4}, Map.of()));
+
+        SearchResult nearest = index.search(new float[] {6, 0, 8}, 1).get(0);
+        assertEquals("a", nearest.id());
+        assertEquals(0, nearest.distance(), 1e-6);
+        float[] values = nearest.values();
+        assertEquals(0.6, values[0], 1e-6);
+        assertEquals(0, values[1], 1e-6);
+        assertEquals(0.8, values[2], 1e-6);
+    }
+
+    @Test
+    void resultsReadValuesAndMetadataWhenAskedFor() {
+        HnswIndex index = new HnswIndex(2, 8, 32, 16, DISTANCE);
+        for (int i = 0; i < 100; i++) {
+            index.upsert(new VectorRecord("id-" + i, new float[] {i, i}, Map.of("rank", Integer.toString(i))));
+        }
+        SearchResult result = index.search(new float[] {50, 50}, 1).get(0);
+        assertEquals("id-50", result.id());
+        assertArrayEquals(new float[] {50, 50}, result.values());
+        assertEquals(Map.of("rank", "50"), result.metadata());
+
+        index.upsert(new VectorRecord("id-50", new float[] {-1, -1}, Map.of("rank", "moved")));
+        assertArrayEquals(new float[] {-1, -1}, result.values());
+        assertEquals(Map.of("rank", "moved"), result.metadata());
+
+        for (int i = 0; i < 50; i++) {
+            index.delete("id-" + i);
+        }
+        index.compact();
+        assertArrayEquals(new float[] {-1, -1}, result.values());
+        assertEquals(Map.of("rank", "moved"), result.metadata());
+
+        index.delete("id-50");
+        assertEquals(0, result.values().length);
+        assertEquals(Map.of(), result.metadata());
+    }
+
+    @Test
+    void reorderedCopyKeepsLiveRecordsAndResults() {
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 64, 32, DISTANCE);
+        Random random = new Random(4);
+        for (int i = 0; i < 3_000; i++) {
+            index.upsert(new VectorRecord("id-" + i, randomVector(random), Map.of("rank", Integer.toString(i))));
+        }
+        for (int i = 0; i < 3_000; i += 10) {
+            index.delete("id-" + i);
+        }
+
+        HnswIndex reordered = index.reordered();
+        reordered.setFlatSearchFloats(0);
+        assertEquals(2_700, reordered.size());
+        assertEquals(0, reordered.tombstoneCount());
+        assertEquals(List.of(), reordered.violations());
+        int found = 0;
+        for (int q = 0; q < 100; q++) {
+            float[] query = randomVector(random);
+            List<SearchResult> expected = index.search(query, 10, null, EXACT);
+            List<SearchResult> exact = reordered.search(query, 10, null, EXACT);
+            Set<String> approximate = new HashSet<>();
+            for (SearchResult result : reordered.search(query, 10, null, new SearchParams(100, 0, 0))) {
+                approximate.add(result.id());
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                SearchResult result = exact.get(i);
+                assertEquals(expected.get(i).id(), result.id());
+                assertArrayEquals(expected.get(i).values(), result.values());
+                assertEquals(expected.get(i).metadata(), result.metadata());
+                found += approximate.contains(result.id()) ? 1 : 0;
+            }
+        }
+        assertTrue(found >= 900, "recall@10 " + found / 1000.0);
+
+        reordered.upsert(new VectorRecord("id-0", new float[DIMENSION], Map.of()));
+        assertTrue(reordered.delete("id-1"));
+        assertEquals(2_700, reordered.size());
+        assertEquals("id-0", reordered.search(new float[DIMENSION], 1, null, EXACT).get(0).id());
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] values = new float[DIMENSION];
+        for (int d = 0; d < DIMENSION; d++) {
+            values[d] = random.nextFloat();
+        }
+        return values;
+    }
+
+    private static HnswIndex quantized(boolean keepFullVectors) {
+        QuantizationConfig int8 = new QuantizationConfig(QuantizationConfig.Mode.INT8, 100, 0, keepFullVectors);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 32, 16, DISTANCE, int8);
+        Random random = new Random(1);
+        for (int i = 0; i < 200; i++) {
+            index.upsert(new VectorRecord("id-" + i, randomVector(random), Map.of()));
+        }
+        return index;
+    }
+}
@@ -0,0 +1,67 @@
+package org.hnsw.hnsw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.persistence.SnapshotInput;
+import org.hnsw.persistence.SnapshotOutput;
+import org.junit.jupiter.api.Test;
+
+class HnswIndexSnapshotTest {
+    private static final EuclideanDistance DISTANCE = new EuclideanDistance(VectorOps.create(false));
+
+    @Test
+    void recycledSlotsAreNotReloadedAsTombstones() throws IOException {
+        HnswIndex index = new HnswIndex(4, 8, 32, 16, DISTANCE);
+        for (int i = 0; i < 100; i++) {
+            index.upsert(new VectorRecord("id-" + i, new float[] {i, i % 7, i % 3, 1}, Map.of()));
+        }
+        for (int i = 0; i < 30; i++) {
+            index.delete("id-" + i);
+        }
+        assertEquals(30, index.compact());
+        index.delete("id-30");
+
+        HnswIndex loaded = roundTrip(index);
+
+        assertEquals(69, loaded.size());
+        assertEquals(1, loaded.tombstoneCount());
+        assertEquals(1.0 / 70, loaded.tombstoneRatio(), 1e-9);
+        assertEquals(List.of(), loaded.violations());
+        assertEquals(1, loaded.compact());
+
+        HnswIndex reloaded = roundTrip(loaded);
+        assertEquals(0, reloaded.tombstoneCount());
+        for (int i = 0; i < 31; i++) {
+            reloaded.upsert(new VectorRecord("new-" + i, new float[] {i, 0, 0, 0}, Map.of()));
+        }
+        assertEquals(100, reloaded.size());
+        assertEquals(List.of(), reloaded.violations());
+        assertEquals(100, roundTrip(reloaded).size());
+    }
+
+    private static HnswIndex roundTrip(HnswIndex index) throws IOException {
+        Path file = Files.createTempFile("hnsw-snapshot", ".snap");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+                 SnapshotOutput out = new SnapshotOutput(channel)) {
+                index.writeSnapshot(out);
+                out.flush();
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return HnswIndex.readSnapshot(new SnapshotInput(channel), DISTANCE);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
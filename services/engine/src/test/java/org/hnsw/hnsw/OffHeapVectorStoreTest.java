@@ -0,0 +1,43 @@
+package org.hnsw.hnsw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.junit.jupiter.api.Test;
+
+class OffHeapVectorStoreTest {
+    private static final int DIMENSION = 5;
+
+    @Test
+    void scoresMatchTheHeapStore() {
+        EuclideanDistance distance = new EuclideanDistance(VectorOps.create(false));
+        OffHeapVectorStore offHeap = new OffHeapVectorStore(DIMENSION);
+        HeapVectorStore heap = new HeapVectorStore(DIMENSION);
+        int nodes = VectorStore.PAGE_SIZE + 10;
+        offHeap.ensureCapacity(nodes);
+        heap.ensureCapacity(nodes);
+        for (int node = 0; node < nodes; node++) {
+            float[] values = new float[DIMENSION];
+            for (int d = 0; d < DIMENSION; d++) {
+                values[d] = (node * 31 + d * 7) % 13;
+            }
+            offHeap.set(node, values);
+            heap.set(node, values);
+        }
+        float[] query = {1, 2, 3, 4, 5};
+
+        for (int node : new int[] {0, 7, VectorStore.PAGE_SIZE - 1, VectorStore.PAGE_SIZE + 9}) {
+            assertEquals(heap.distance(distance, query, node), offHeap.distance(distance, query, node), 1e-9);
+        }
+        for (int count : new int[] {64, 3, 64}) {
+            double[] expected = new double[count];
+            double[] actual = new double[count];
+            heap.distances(distance, query, VectorStore.PAGE_SIZE, count, expected);
+            offHeap.distances(distance, query, VectorStore.PAGE_SIZE, count, actual);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected[i], actual[i], 1e-9);
+            }
+        }
+    }
+}
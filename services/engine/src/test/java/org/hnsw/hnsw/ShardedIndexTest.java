@@ -0,0 +1,86 @@
+package org.hnsw.hnsw;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.filter.MetadataFilter;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.quantization.QuantizationConfig;
+import org.junit.jupiter.api.Test;
+
+class ShardedIndexTest {
+    private static final int DIMENSION = 8;
+    private static final int RECORDS = 2_000;
+    private static final EuclideanDistance DISTANCE = new EuclideanDistance(VectorOps.create(false));
+    private static final SearchParams EXACT = new SearchParams(0, 0, 0, true);
+
+    @Test
+    void everyIdIsRoutedToTheSameShard() {
+        ShardedIndex index = sharded();
+        Random random = new Random(1);
+        index.upsertAll(records(random));
+        assertEquals(RECORDS, index.size());
+
+        for (int i = 0; i < RECORDS; i++) {
+            index.upsert(new VectorRecord("id-" + i, randomVector(random), Map.of()));
+        }
+        assertEquals(RECORDS, index.size());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(index.delete("id-" + i));
+            assertFalse(index.delete("id-" + i));
+        }
+        assertEquals(RECORDS - 100, index.size());
+    }
+
+    @Test
+    void mergedResultsMatchASingleIndex() {
+        ShardedIndex sharded = sharded();
+        HnswIndex single = new HnswIndex(DIMENSION, 8, 64, 32, DISTANCE);
+        Random random = new Random(2);
+        List<VectorRecord> records = records(random);
+        sharded.upsertAll(records);
+        single.upsertAll(records);
+
+        MetadataFilter even = new MetadataFilter.Match("parity", Set.of("0"));
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random);
+            MetadataFilter filter = q % 2 == 0 ? null : even;
+            List<SearchResult> expected = single.search(query, 10, filter, EXACT);
+            List<SearchResult> actual = sharded.search(query, 10, filter, EXACT);
+            assertEquals(10, actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(expected.get(i).id(), actual.get(i).id(), "query " + q + " rank " + i);
+                assertEquals(expected.get(i).distance(), actual.get(i).distance(), 1e-9);
+            }
+        }
+    }
+
+    private static ShardedIndex sharded() {
+        return new ShardedIndex(4, DIMENSION, 8, 64, 32, DISTANCE, QuantizationConfig.none());
+    }
+
+    private static List<VectorRecord> records(Random random) {
+        List<VectorRecord> records = new ArrayList<>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            records.add(new VectorRecord("id-" + i, randomVector(random), Map.of("parity", Integer.toString(i % 2))));
+        }
+        return records;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] values = new float[DIMENSION];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextFloat();
+        }
+        return values;
+    }
+}
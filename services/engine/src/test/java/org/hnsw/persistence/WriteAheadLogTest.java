@@ -0,0 +1,83 @@
+package org.hnsw.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.VectorRecord;
+import org.hnsw.quantization.QuantizationConfig;
+import org.hnsw.store.IndexOptions;
+import org.junit.jupiter.api.Test;
+
+class WriteAheadLogTest {
+    private static final IndexOptions OPTIONS = IndexOptions.of(QuantizationConfig.none());
+
+    @Test
+    void concurrentFsyncedAppendsShareFsyncsAndAreAllReplayedInOrder() throws Exception {
+        Path directory = Files.createTempDirectory("wal-test");
+        int threads = 8;
+        int appends = 200;
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, true)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    writers.add(executor.submit(() -> {
+                        for (int i = 0; i < appends; i++) {
+                            String id = thread + "-" + i;
+                            if (i % 5 == 0) {
+                                wal.appendDelete("docs", List.of(id));
+                            } else {
+                                wal.appendUpsert("docs", OPTIONS,
+                                        List.of(new VectorRecord(id, new float[] {thread, i}, Map.of())));
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> writer : writers) {
+                    writer.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(threads * appends, wal.lastLsn());
+            long syncs = wal.syncs();
+            assertTrue(syncs < threads * appends, syncs + " fsyncs for " + threads * appends + " appends");
+        }
+
+        try (WriteAheadLog wal = WriteAheadLog.open(directory, true)) {
+            List<Long> lsns = new ArrayList<>();
+            Set<String> ids = new HashSet<>();
+            wal.replay(entry -> {
+                lsns.add(entry.lsn());
+                entry.records().forEach(record -> ids.add(record.id()));
+                ids.addAll(entry.deletedIds());
+            });
+            assertEquals(threads * appends, lsns.size());
+            for (int i = 0; i < lsns.size(); i++) {
+                assertEquals(i + 1L, (long) lsns.get(i));
+            }
+            assertEquals(threads * appends, ids.size());
+            assertEquals(threads * appends, wal.lastLsn());
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.hnsw.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.hnsw.VectorRecord;
+import org.hnsw.quantization.QuantizationConfig;
+import org.junit.jupiter.api.Test;
+
+class ChangeFeedTest {
+    private static final IndexOptions OPTIONS = IndexOptions.of(QuantizationConfig.none());
+
+    @Test
+    void keepsNothingWithoutSubscribers() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(WriteJournal.NONE, 1 << 20);
+        feed.appendUpsert("docs", OPTIONS, List.of(record("a")));
+        feed.appendDelete("docs", List.of("a"));
+
+        assertEquals(0, feed.memoryBytes("docs"));
+        assertEquals(2, feed.head("docs").sequence());
+        assertTrue(feed.read("docs", 0, 10, 0).resync());
+        assertFalse(feed.read("docs", 2, 10, 0).resync());
+    }
+
+    @Test
+    void keepsChangesWhileSubscribedAndReleasesThemOnEviction() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(WriteJournal.NONE, 1 << 20);
+        feed.addSubscriber("docs");
+        feed.appendUpsert("docs", OPTIONS, List.of(record("a")));
+        feed.appendDelete("docs", List.of("a"));
+
+        ChangeFeed.Read read = feed.read("docs", 0, 10, 0);
+        assertFalse(read.resync());
+        assertEquals(List.of(1L, 2L), read.changes().stream().map(ChangeFeed.Change::sequence).toList());
+        assertTrue(feed.memoryBytes("docs") > 0);
+
+        feed.removeSubscriber("docs");
+        feed.appendDelete("docs", List.of("b"));
+        assertEquals(3, feed.read("docs", 0, 10, 0).changes().size(), "kept for a reconnecting subscriber");
+
+        feed.release("docs");
+        assertEquals(0, feed.memoryBytes("docs"));
+        assertTrue(feed.read("docs", 0, 10, 0).resync());
+    }
+
+    @Test
+    void retentionBoundDropsTheOldestChanges() throws InterruptedException {
+        ChangeFeed feed = new ChangeFeed(WriteJournal.NONE, 1_000);
+        feed.addSubscriber("docs");
+        for (int i = 0; i < 20; i++) {
+            feed.appendUpsert("docs", OPTIONS, List.of(record("id-" + i)));
+        }
+
+        assertTrue(feed.memoryBytes("docs") <= 1_000);
+        assertTrue(feed.read("docs", 0, 10, 0).resync());
+        assertEquals(20, feed.read("docs", 19, 10, 0).changes().get(0).sequence());
+    }
+
+    private static VectorRecord record(String id) {
+        return new VectorRecord(id, new float[] {1, 2, 3, 4}, Map.of());
+    }
+}
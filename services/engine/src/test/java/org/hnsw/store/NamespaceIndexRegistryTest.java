@@ -0,0 +1,122 @@
+package org.hnsw.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.hnsw.hnsw.VectorIndex;
+import org.hnsw.quantization.QuantizationConfig;
+import org.junit.jupiter.api.Test;
+
+class NamespaceIndexRegistryTest {
+    private static final IndexOptions OPTIONS = IndexOptions.of(QuantizationConfig.none());
+
+    @Test
+    void concurrentWritesToOneIdAreAppliedInJournalOrder() throws Exception {
+        NamespaceIndexRegistry registry = new NamespaceIndexRegistry(8, 32, 16,
+                new EuclideanDistance(VectorOps.create(false)), OPTIONS);
+        List<VectorRecord> journaled = new ArrayList<>();
+        registry.setJournal(new WriteJournal() {
+            @Override
+            public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+                synchronized (journaled) {
+                    journaled.addAll(records);
+                }
+                Thread.yield();
+            }
+
+            @Override
+            public void appendDelete(String namespace, List<String> ids) {
+            }
+
+            @Override
+            public void appendReplace(String namespace, VectorIndex index) {
+            }
+        });
+        int threads = 4;
+        SearchParams exact = new SearchParams(0, 0, 0, true);
+        CyclicBarrier round = new CyclicBarrier(threads, () -> {
+            float[] last = journaled.get(journaled.size() - 1).values();
+            SearchResult nearest = registry.get("docs").search(last, 1, null, exact).get(0);
+            assertTrue(Arrays.equals(last, nearest.values()), "index diverged from the journal");
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        VectorRecord record = new VectorRecord("hot", new float[] {thread, i}, Map.of());
+                        registry.upsert("docs", OPTIONS, List.of(record));
+                        round.await(10, TimeUnit.SECONDS);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, registry.get("docs").size());
+    }
+
+    @Test
+    void optimizeJournalsAndPublishesAReorderedCopy() {
+        NamespaceIndexRegistry registry = new NamespaceIndexRegistry(8, 32, 16,
+                new EuclideanDistance(VectorOps.create(false)), OPTIONS);
+        List<VectorIndex> replaced = new ArrayList<>();
+        registry.setJournal(new WriteJournal() {
+            @Override
+            public void appendUpsert(String namespace, IndexOptions options, List<VectorRecord> records) {
+            }
+
+            @Override
+            public void appendDelete(String namespace, List<String> ids) {
+            }
+
+            @Override
+            public void appendReplace(String namespace, VectorIndex index) {
+                replaced.add(index);
+            }
+        });
+        List<VectorRecord> records = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            records.add(new VectorRecord("id-" + i, new float[] {i % 25, i / 25}, Map.of()));
+        }
+        registry.upsert("docs", OPTIONS, records);
+        registry.delete("docs", List.of("id-0", "id-1"));
+        VectorIndex original = registry.get("docs");
+        SearchParams exact = new SearchParams(0, 0, 0, true);
+        float[] query = {12.2f, 7.6f};
+        List<SearchResult> before = original.search(query, 5, null, exact);
+
+        VectorIndex optimized = registry.optimize("docs");
+        assertEquals(List.of(optimized), replaced);
+        assertSame(optimized, registry.get("docs"));
+        assertEquals(498, optimized.size());
+        assertEquals(0, optimized.tombstoneCount());
+        List<SearchResult> after = optimized.search(query, 5, null, exact);
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).id(), after.get(i).id());
+        }
+        assertNull(registry.optimize("missing"));
+    }
+}
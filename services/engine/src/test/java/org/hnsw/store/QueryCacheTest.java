@@ -0,0 +1,67 @@
+package org.hnsw.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import org.hnsw.VectorRecord;
+import org.hnsw.distance.EuclideanDistance;
+import org.hnsw.distance.VectorOps;
+import org.hnsw.hnsw.HnswIndex;
+import org.hnsw.hnsw.HnswIndex.SearchResult;
+import org.hnsw.hnsw.SearchParams;
+import org.junit.jupiter.api.Test;
+
+class QueryCacheTest {
+
+    @Test
+    void servesRepeatedSearchesUntilTheNextWrite() {
+        HnswIndex index = index();
+        QueryCache cache = new QueryCache(16, new QueryCache.Budget(1 << 20));
+
+        List<SearchResult> first = search(cache, index, 1);
+        assertSame(first, search(cache, index, 1));
+        index.upsert(new VectorRecord("new", new float[] {1, 1}, Map.of()));
+        search(cache, index, 1);
+
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    void sharedBudgetEvictsFromTheLargestCache() {
+        HnswIndex index = index();
+        QueryCache.Budget budget = new QueryCache.Budget(1_500);
+        QueryCache large = new QueryCache(100, budget);
+        QueryCache small = new QueryCache(100, budget);
+        for (int i = 0; i < 5; i++) {
+            search(large, index, i);
+        }
+        search(small, index, 100);
+        search(small, index, 101);
+
+        assertTrue(budget.memoryBytes() <= 1_500);
+        assertEquals(budget.memoryBytes(), large.memoryBytes() + small.memoryBytes());
+        assertEquals(2, small.size());
+        assertTrue(large.evictions() > 0);
+
+        large.clear();
+        assertEquals(small.memoryBytes(), budget.memoryBytes());
+        search(large, index, 0);
+        assertEquals(0, large.size(), "a cleared cache stays empty");
+    }
+
+    private static List<SearchResult> search(QueryCache cache, HnswIndex index, float x) {
+        return cache.search(index, new float[] {x, 0}, 3, null, SearchParams.DEFAULT);
+    }
+
+    private static HnswIndex index() {
+        HnswIndex index = new HnswIndex(2, 8, 32, 16, new EuclideanDistance(VectorOps.create(false)));
+        for (int i = 0; i < 10; i++) {
+            index.upsert(new VectorRecord("id-" + i, new float[] {i, i}, Map.of()));
+        }
+        return index;
+    }
+}